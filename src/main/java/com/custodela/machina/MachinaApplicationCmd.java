@@ -5,6 +5,7 @@ import com.custodela.machina.dto.BugTracker;
 import com.custodela.machina.dto.Filter;
 import com.custodela.machina.dto.MachinaOverride;
 import com.custodela.machina.dto.ScanRequest;
+import com.custodela.machina.service.BatchShard;
 import com.custodela.machina.service.MachinaService;
 import com.custodela.machina.utils.ScanUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -76,8 +77,8 @@ public class MachinaApplicationCmd implements ApplicationRunner {
         MachinaOverride o = null;
         ObjectMapper mapper = new ObjectMapper();
 
-        if(!arg.containsOption("scan") && !arg.containsOption("parse") && !arg.containsOption("batch") && !arg.containsOption("project")){
-            log.error("--scan | --parse | --batch | --project option must be specified");
+        if(!arg.containsOption("scan") && !arg.containsOption("parse") && !arg.containsOption("batch") && !arg.containsOption("batch-merge") && !arg.containsOption("project")){
+            log.error("--scan | --parse | --batch | --batch-merge | --project option must be specified");
             exit(1);
         }
 
@@ -114,7 +115,7 @@ public class MachinaApplicationCmd implements ApplicationRunner {
         excludeFiles = arg.getOptionValues("exclude-files");
         excludeFolders = arg.getOptionValues("exclude-folders");
 
-        if(((ScanUtils.empty(namespace) && ScanUtils.empty(repoName) && ScanUtils.empty(branch)) && ScanUtils.empty(application)) && !arg.containsOption("batch")) {
+        if(((ScanUtils.empty(namespace) && ScanUtils.empty(repoName) && ScanUtils.empty(branch)) && ScanUtils.empty(application)) && !arg.containsOption("batch") && !arg.containsOption("batch-merge")) {
             log.error("Namespace/Repo/Branch or Application (app) must be provided");
             exit(1);
         }
@@ -126,7 +127,8 @@ public class MachinaApplicationCmd implements ApplicationRunner {
         }
         else{
             filters = ScanUtils.getFilters(machinaProperties.getFilterSeverity(), machinaProperties.getFilterCwe(),
-                    machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus());
+                    machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus(),
+                    machinaProperties.getFilterPath(), machinaProperties.getFilterLanguage());
         }
 
         BugTracker.Type bugType = BugTracker.Type.valueOf(bugTracker);
@@ -233,7 +235,25 @@ public class MachinaApplicationCmd implements ApplicationRunner {
             }
             else if(arg.containsOption("batch")){
                 log.info("Executing batch process");
-                cxBatch(request);
+                BatchShard shard = BatchShard.NONE;
+                if(arg.containsOption("shard-index") || arg.containsOption("shard-count")){
+                    if(ScanUtils.empty(arg.getOptionValues("shard-index")) || ScanUtils.empty(arg.getOptionValues("shard-count"))){
+                        log.error("Both shard-index and shard-count must be provided for a sharded batch");
+                        exit(1);
+                    }
+                    try {
+                        shard = new BatchShard(Integer.parseInt(arg.getOptionValues("shard-index").get(0)),
+                                Integer.parseInt(arg.getOptionValues("shard-count").get(0)));
+                    }catch (IllegalArgumentException e){
+                        log.error("Invalid shard-index/shard-count: {}", e.getMessage());
+                        exit(1);
+                    }
+                }
+                cxBatch(request, arg.containsOption("resume"), arg.containsOption("skip-unchanged") || machinaProperties.isBatchSkipUnchanged(), shard);
+            }
+            else if(arg.containsOption("batch-merge")){
+                log.info("Merging batch shard summaries");
+                machinaService.cxBatchMerge(request);
             }
             else if(arg.containsOption("project")){
                 if(ScanUtils.empty(team) || ScanUtils.empty(cxProject)){
@@ -264,8 +284,8 @@ public class MachinaApplicationCmd implements ApplicationRunner {
     private void cxParse(ScanRequest request, File file){
         machinaService.cxParseResults(request, file);
     }
-    private void cxBatch(ScanRequest request){
-        machinaService.cxBatch(request);
+    private void cxBatch(ScanRequest request, boolean resume, boolean skipUnchanged, BatchShard shard){
+        machinaService.cxBatch(request, resume, skipUnchanged, shard);
     }
     private void cxResults(ScanRequest request){
         machinaService.cxGetResults(request, null);
@@ -33,6 +33,7 @@ public class CxProperties {
     private String team;
     private Boolean offline = false;
     private Integer scanTimeout = 120;
+    private Integer scanPollInterval = 20;
     private String jiraProjectField = "jira-project";
     private String jiraIssuetypeField = "jira-issuetype";
     private String jiraCustomField = "jira-fields";
@@ -54,6 +55,16 @@ public class CxProperties {
 
     private String htmlStrip = "<style>.cxtaghighlight{color: rgb(101, 170, 235);font-weight:bold;}</style>";
 
+    private Integer descriptionThreads = 4;
+    private Integer descriptionCacheSize = 1000;
+    private Integer descriptionCacheTtl = 60;
+    private Integer referenceCacheTtl = 60;
+    private Integer projectCacheTtl = 10;
+    private Integer lookupCacheTtl = 60;
+    private String reportCacheDir;
+    private Integer reportCacheSize = 1024;
+    private Integer reportParallelism = 1;
+
     public @NotNull
     @NotBlank String getUsername() {
         return this.username;
@@ -222,4 +233,84 @@ public class CxProperties {
     public void setHtmlStrip(String htmlStrip) {
         this.htmlStrip = htmlStrip;
     }
+
+    public Integer getDescriptionThreads() {
+        return this.descriptionThreads;
+    }
+
+    public void setDescriptionThreads(Integer descriptionThreads) {
+        this.descriptionThreads = descriptionThreads;
+    }
+
+    public Integer getDescriptionCacheSize() {
+        return this.descriptionCacheSize;
+    }
+
+    public void setDescriptionCacheSize(Integer descriptionCacheSize) {
+        this.descriptionCacheSize = descriptionCacheSize;
+    }
+
+    public Integer getDescriptionCacheTtl() {
+        return this.descriptionCacheTtl;
+    }
+
+    public void setDescriptionCacheTtl(Integer descriptionCacheTtl) {
+        this.descriptionCacheTtl = descriptionCacheTtl;
+    }
+
+    public Integer getReferenceCacheTtl() {
+        return this.referenceCacheTtl;
+    }
+
+    public void setReferenceCacheTtl(Integer referenceCacheTtl) {
+        this.referenceCacheTtl = referenceCacheTtl;
+    }
+
+    public Integer getProjectCacheTtl() {
+        return this.projectCacheTtl;
+    }
+
+    public void setProjectCacheTtl(Integer projectCacheTtl) {
+        this.projectCacheTtl = projectCacheTtl;
+    }
+
+    public Integer getLookupCacheTtl() {
+        return this.lookupCacheTtl;
+    }
+
+    public void setLookupCacheTtl(Integer lookupCacheTtl) {
+        this.lookupCacheTtl = lookupCacheTtl;
+    }
+
+    public Integer getScanPollInterval() {
+        return this.scanPollInterval;
+    }
+
+    public void setScanPollInterval(Integer scanPollInterval) {
+        this.scanPollInterval = scanPollInterval;
+    }
+
+    public String getReportCacheDir() {
+        return this.reportCacheDir;
+    }
+
+    public void setReportCacheDir(String reportCacheDir) {
+        this.reportCacheDir = reportCacheDir;
+    }
+
+    public Integer getReportCacheSize() {
+        return this.reportCacheSize;
+    }
+
+    public void setReportCacheSize(Integer reportCacheSize) {
+        this.reportCacheSize = reportCacheSize;
+    }
+
+    public Integer getReportParallelism() {
+        return this.reportParallelism;
+    }
+
+    public void setReportParallelism(Integer reportParallelism) {
+        this.reportParallelism = reportParallelism;
+    }
 }
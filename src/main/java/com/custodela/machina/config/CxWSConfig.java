@@ -1,9 +1,11 @@
 package com.custodela.machina.config;
 
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.oxm.jaxb.Jaxb2Marshaller;
 import org.springframework.ws.client.core.WebServiceTemplate;
+import org.springframework.ws.transport.http.HttpComponentsMessageSender;
 
 import java.beans.ConstructorProperties;
 
@@ -19,17 +21,18 @@ public class CxWSConfig {
 
     @Bean
     public Jaxb2Marshaller marshaller() {
-        Jaxb2Marshaller marshaller = new Jaxb2Marshaller();
+        Jaxb2Marshaller marshaller = new PooledJaxb2Marshaller();
         marshaller.setContextPaths(properties.getPortalPackage());
         return marshaller;
     }
 
     @Bean
-    public WebServiceTemplate webServiceTemplate(Jaxb2Marshaller marshaller) {
+    public WebServiceTemplate webServiceTemplate(Jaxb2Marshaller marshaller, CloseableHttpClient httpClient) {
         WebServiceTemplate ws = new WebServiceTemplate();
         ws.setDefaultUri(properties.getPortalUrl());
         ws.setMarshaller(marshaller);
         ws.setUnmarshaller(marshaller);
+        ws.setMessageSender(new HttpComponentsMessageSender(httpClient));
         return ws;
     }
 
@@ -33,6 +33,16 @@ public class JiraProperties {
     private List<String> openStatus;
     private List<String> closedStatus;
     private List<Field> fields;
+    private Integer metadataCacheTtl = 60;
+    private Integer searchPageSize = 100;
+    private Integer bulkCreateSize = 50;
+    private Integer syncParallelism = 8;
+    private Double rateLimit = 10.0;
+    private Integer maxRetries = 5;
+    private Long retryBackoff = 1000L;
+    private boolean skipUnchanged = false;
+    private String digestField;
+    private String digestLabelPrefix = "cx-digest";
 
     public String getUrl() {
         return this.url;
@@ -118,6 +128,46 @@ public class JiraProperties {
         return this.fields;
     }
 
+    public Integer getMetadataCacheTtl() {
+        return this.metadataCacheTtl;
+    }
+
+    public Integer getSearchPageSize() {
+        return this.searchPageSize;
+    }
+
+    public Integer getBulkCreateSize() {
+        return this.bulkCreateSize;
+    }
+
+    public Integer getSyncParallelism() {
+        return this.syncParallelism;
+    }
+
+    public Double getRateLimit() {
+        return this.rateLimit;
+    }
+
+    public Integer getMaxRetries() {
+        return this.maxRetries;
+    }
+
+    public Long getRetryBackoff() {
+        return this.retryBackoff;
+    }
+
+    public boolean isSkipUnchanged() {
+        return this.skipUnchanged;
+    }
+
+    public String getDigestField() {
+        return this.digestField;
+    }
+
+    public String getDigestLabelPrefix() {
+        return this.digestLabelPrefix;
+    }
+
     public void setUrl(String url) {
         this.url = url;
     }
@@ -201,4 +251,44 @@ public class JiraProperties {
     public void setFields(List<Field> fields) {
         this.fields = fields;
     }
+
+    public void setMetadataCacheTtl(Integer metadataCacheTtl) {
+        this.metadataCacheTtl = metadataCacheTtl;
+    }
+
+    public void setSearchPageSize(Integer searchPageSize) {
+        this.searchPageSize = searchPageSize;
+    }
+
+    public void setBulkCreateSize(Integer bulkCreateSize) {
+        this.bulkCreateSize = bulkCreateSize;
+    }
+
+    public void setSyncParallelism(Integer syncParallelism) {
+        this.syncParallelism = syncParallelism;
+    }
+
+    public void setRateLimit(Double rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public void setMaxRetries(Integer maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public void setRetryBackoff(Long retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    public void setDigestField(String digestField) {
+        this.digestField = digestField;
+    }
+
+    public void setDigestLabelPrefix(String digestLabelPrefix) {
+        this.digestLabelPrefix = digestLabelPrefix;
+    }
 }
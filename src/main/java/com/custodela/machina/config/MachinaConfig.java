@@ -2,33 +2,91 @@ package com.custodela.machina.config;
 
 import com.custodela.machina.dto.ScanRequest;
 import com.custodela.machina.utils.ScanUtils;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.converter.StringHttpMessageConverter;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.ws.transport.http.HttpComponentsMessageSender;
 import java.beans.ConstructorProperties;
 import java.nio.charset.Charset;
 import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class MachinaConfig {
 
     private final MachinaProperties properties;
+    private final CxProperties cxProperties;
     public static final int QUEUE_CAPACITY = 10000;
 
 
-    @ConstructorProperties({"properties"})
-    public MachinaConfig(MachinaProperties properties) {
+    @ConstructorProperties({"properties", "cxProperties"})
+    public MachinaConfig(MachinaProperties properties, CxProperties cxProperties) {
         this.properties = properties;
+        this.cxProperties = cxProperties;
+    }
+
+    /**
+     * Connection pool shared by the REST (Cx, GitHub, GitLab, Bitbucket) and SOAP (Cx) clients
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager httpConnectionManager(MeterRegistry registry) {
+        MachinaProperties.Http http = properties.getHttp();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(http.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(http.getMaxPerRoute());
+        connectionManager.setValidateAfterInactivity(2000);
+
+        Gauge.builder("machina.http.pool.leased", connectionManager, cm -> cm.getTotalStats().getLeased()).register(registry);
+        Gauge.builder("machina.http.pool.available", connectionManager, cm -> cm.getTotalStats().getAvailable()).register(registry);
+        Gauge.builder("machina.http.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending()).register(registry);
+        Gauge.builder("machina.http.pool.max", connectionManager, cm -> cm.getTotalStats().getMax()).register(registry);
+        return connectionManager;
+    }
+
+    /**
+     * Keep-alive HTTP client, gzip/deflate responses are decompressed transparently
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager connectionManager) {
+        MachinaProperties.Http http = properties.getHttp();
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(http.getConnectTimeout())
+                .setSocketTimeout(http.getReadTimeout())
+                .setConnectionRequestTimeout(http.getConnectionRequestTimeout())
+                .build();
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return keepAlive > 0 ? Math.min(keepAlive, http.getKeepAlive()) : http.getKeepAlive();
+                })
+                .evictIdleConnections(http.getKeepAlive(), TimeUnit.MILLISECONDS)
+                /*Spring WS sets Content-Length/SOAPAction itself, the client would otherwise reject the request*/
+                .addInterceptorFirst(new HttpComponentsMessageSender.RemoveSoapHeadersInterceptor())
+                .build();
     }
 
     @Bean
-    public RestTemplate getRestTemplate(){
-        RestTemplate restTemplate = new RestTemplate();
+    public RestTemplate getRestTemplate(CloseableHttpClient httpClient){
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
         restTemplate.getMessageConverters()
                 .add(0, new StringHttpMessageConverter(Charset.forName("UTF-8")));
         return restTemplate;
@@ -57,6 +115,73 @@ public class MachinaConfig {
         return executor;
     }
 
+    /**
+     * Bounded pool used for legacy SOAP issue description calls (GetResultDescription)
+     */
+    @Bean("cxDescription")
+    public TaskExecutor cxDescriptionTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(cxProperties.getDescriptionThreads());
+        executor.setMaxPoolSize(cxProperties.getDescriptionThreads());
+        executor.setQueueCapacity(QUEUE_CAPACITY);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("cx-description");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Single thread reloading the cached Cx reference data (teams, presets, engine configurations, project index)
+     * in the background
+     */
+    @Bean("cxReference")
+    public TaskExecutor cxReferenceTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(QUEUE_CAPACITY);
+        executor.setThreadNamePrefix("cx-reference");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pool used to map the queries of large scan reports to issues in parallel (checkmarx.report-parallelism)
+     */
+    @Bean(name = "cxReport", destroyMethod = "shutdown")
+    public ForkJoinPool cxReportPool() {
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("cx-report-".concat(String.valueOf(thread.getPoolIndex())));
+            return thread;
+        };
+        return new ForkJoinPool(Math.max(1, cxProperties.getReportParallelism()), factory, null, false);
+    }
+
+    /**
+     * Single thread polling the status of all in-flight Cx scans
+     */
+    @Bean("scanWatcher")
+    public ThreadPoolTaskScheduler scanWatcherTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("cx-scan-watcher");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    /**
+     * Pool completing (and retrying) the Jira calls of a results sync (jira.sync-parallelism)
+     */
+    @Bean("jiraSync")
+    public ThreadPoolTaskScheduler jiraSyncTaskScheduler(JiraProperties jiraProperties) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(1, jiraProperties.getSyncParallelism()));
+        scheduler.setThreadNamePrefix("jira-sync");
+        scheduler.initialize();
+        return scheduler;
+    }
+
     @Bean
     public JavaMailSender getJavaMailSender() {
         JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
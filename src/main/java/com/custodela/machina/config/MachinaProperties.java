@@ -21,6 +21,8 @@ public class MachinaProperties {
     private List<String> filterCwe;
     private List<String> filterCategory;
     private List<String> filterStatus;
+    private List<String> filterPath;
+    private List<String> filterLanguage;
     private String mitreUrl;
     private String wikiUrl;
     private String codebashUrl;
@@ -28,8 +30,13 @@ public class MachinaProperties {
     private boolean incremental = false;
     private Integer webHookQueue = 100;
     private Integer scanResultQueue = 4;
+    private String batchStoreDir = System.getProperty("java.io.tmpdir");
+    private Integer batchParallelism = 4;
+    private Integer batchProgressInterval = 60;
+    private boolean batchSkipUnchanged = false;
 
     private Mail mail;
+    private Http http = new Http();
 
     public String getContact() {
         return this.contact;
@@ -64,6 +71,14 @@ public class MachinaProperties {
         return this.filterStatus;
     }
 
+    public List<String> getFilterPath() {
+        return this.filterPath;
+    }
+
+    public List<String> getFilterLanguage() {
+        return this.filterLanguage;
+    }
+
     public String getMitreUrl() {
         return this.mitreUrl;
     }
@@ -112,6 +127,14 @@ public class MachinaProperties {
         this.filterStatus = filterStatus;
     }
 
+    public void setFilterPath(List<String> filterPath) {
+        this.filterPath = filterPath;
+    }
+
+    public void setFilterLanguage(List<String> filterLanguage) {
+        this.filterLanguage = filterLanguage;
+    }
+
     public void setMitreUrl(String mitreUrl) {
         this.mitreUrl = mitreUrl;
     }
@@ -128,6 +151,14 @@ public class MachinaProperties {
         this.mail = mail;
     }
 
+    public Http getHttp() {
+        return this.http;
+    }
+
+    public void setHttp(Http http) {
+        this.http = http;
+    }
+
     public Integer getWebHookQueue() {
         return webHookQueue;
     }
@@ -144,6 +175,38 @@ public class MachinaProperties {
         this.scanResultQueue = scanResultQueue;
     }
 
+    public String getBatchStoreDir() {
+        return this.batchStoreDir;
+    }
+
+    public void setBatchStoreDir(String batchStoreDir) {
+        this.batchStoreDir = batchStoreDir;
+    }
+
+    public Integer getBatchParallelism() {
+        return this.batchParallelism;
+    }
+
+    public void setBatchParallelism(Integer batchParallelism) {
+        this.batchParallelism = batchParallelism;
+    }
+
+    public Integer getBatchProgressInterval() {
+        return this.batchProgressInterval;
+    }
+
+    public void setBatchProgressInterval(Integer batchProgressInterval) {
+        this.batchProgressInterval = batchProgressInterval;
+    }
+
+    public boolean isBatchSkipUnchanged() {
+        return this.batchSkipUnchanged;
+    }
+
+    public void setBatchSkipUnchanged(boolean batchSkipUnchanged) {
+        this.batchSkipUnchanged = batchSkipUnchanged;
+    }
+
     public boolean isIncremental() {
         return incremental;
     }
@@ -209,4 +272,64 @@ public class MachinaProperties {
 
     }
 
+    /**
+     * Pooled HTTP client settings (timeouts in milliseconds)
+     */
+    public static class Http {
+        private Integer maxTotal = 200;
+        private Integer maxPerRoute = 50;
+        private Integer connectTimeout = 10000;
+        private Integer readTimeout = 300000;
+        private Integer connectionRequestTimeout = 30000;
+        private Integer keepAlive = 60000;
+
+        public Integer getMaxTotal() {
+            return this.maxTotal;
+        }
+
+        public Integer getMaxPerRoute() {
+            return this.maxPerRoute;
+        }
+
+        public Integer getConnectTimeout() {
+            return this.connectTimeout;
+        }
+
+        public Integer getReadTimeout() {
+            return this.readTimeout;
+        }
+
+        public Integer getConnectionRequestTimeout() {
+            return this.connectionRequestTimeout;
+        }
+
+        public Integer getKeepAlive() {
+            return this.keepAlive;
+        }
+
+        public void setMaxTotal(Integer maxTotal) {
+            this.maxTotal = maxTotal;
+        }
+
+        public void setMaxPerRoute(Integer maxPerRoute) {
+            this.maxPerRoute = maxPerRoute;
+        }
+
+        public void setConnectTimeout(Integer connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public void setReadTimeout(Integer readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public void setConnectionRequestTimeout(Integer connectionRequestTimeout) {
+            this.connectionRequestTimeout = connectionRequestTimeout;
+        }
+
+        public void setKeepAlive(Integer keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.custodela.machina.config;
+
+import org.springframework.oxm.jaxb.Jaxb2Marshaller;
+
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * Jaxb2Marshaller which keeps one JAXB Marshaller/Unmarshaller per thread instead of creating them for every SOAP call.
+ *
+ * The JAXBContext itself is already created once by Jaxb2Marshaller.  JAXB (un)marshallers are not thread safe, they
+ * are only reused by the thread that created them.
+ */
+public class PooledJaxb2Marshaller extends Jaxb2Marshaller {
+
+    private final ThreadLocal<Marshaller> marshallers = new ThreadLocal<>();
+    private final ThreadLocal<Unmarshaller> unmarshallers = new ThreadLocal<>();
+
+    @Override
+    protected Marshaller createMarshaller() {
+        Marshaller marshaller = marshallers.get();
+        if (marshaller == null) {
+            marshaller = super.createMarshaller();
+            marshallers.set(marshaller);
+        }
+        return marshaller;
+    }
+
+    @Override
+    protected Unmarshaller createUnmarshaller() {
+        Unmarshaller unmarshaller = unmarshallers.get();
+        if (unmarshaller == null) {
+            unmarshaller = super.createUnmarshaller();
+            unmarshallers.set(unmarshaller);
+        }
+        return unmarshaller;
+    }
+}
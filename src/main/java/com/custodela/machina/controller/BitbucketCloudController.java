@@ -104,7 +104,8 @@ public class BitbucketCloudController {
             }
             else{
                 filters = ScanUtils.getFilters(machinaProperties.getFilterSeverity(), machinaProperties.getFilterCwe(),
-                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus());
+                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus(),
+                        machinaProperties.getFilterPath(), machinaProperties.getFilterLanguage());
             }
 
             String gitUrl = body.getRepository().getLinks().getHtml().getHref().concat(".git");
@@ -224,7 +225,8 @@ public class BitbucketCloudController {
             }
             else{
                 filters = ScanUtils.getFilters(machinaProperties.getFilterSeverity(), machinaProperties.getFilterCwe(),
-                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus());
+                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus(),
+                        machinaProperties.getFilterPath(), machinaProperties.getFilterLanguage());
             }
             /*Determine emails*/
             List<String> emails = new ArrayList<>();
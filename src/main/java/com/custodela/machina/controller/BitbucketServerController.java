@@ -144,7 +144,8 @@ public class BitbucketServerController {
             }
             else{
                 filters = ScanUtils.getFilters(machinaProperties.getFilterSeverity(), machinaProperties.getFilterCwe(),
-                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus());
+                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus(),
+                        machinaProperties.getFilterPath(), machinaProperties.getFilterLanguage());
             }
 
             String gitUrl = properties.getUrl().concat("/scm/")
@@ -278,7 +279,8 @@ public class BitbucketServerController {
             }
             else{
                 filters = ScanUtils.getFilters(machinaProperties.getFilterSeverity(), machinaProperties.getFilterCwe(),
-                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus());
+                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus(),
+                        machinaProperties.getFilterPath(), machinaProperties.getFilterLanguage());
             }
             List<String> emails = new ArrayList<>();
 
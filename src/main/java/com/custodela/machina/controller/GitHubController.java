@@ -156,7 +156,8 @@ public class GitHubController {
             }
             else{
                 filters = ScanUtils.getFilters(machinaProperties.getFilterSeverity(), machinaProperties.getFilterCwe(),
-                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus());
+                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus(),
+                        machinaProperties.getFilterPath(), machinaProperties.getFilterLanguage());
             }
 
             //build request object
@@ -269,7 +270,8 @@ public class GitHubController {
             }
             else{
                 filters = ScanUtils.getFilters(machinaProperties.getFilterSeverity(), machinaProperties.getFilterCwe(),
-                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus());
+                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus(),
+                        machinaProperties.getFilterPath(), machinaProperties.getFilterLanguage());
             }
             /*Determine emails*/
             List<String> emails = new ArrayList<>();
@@ -116,7 +116,8 @@ public class GitLabController {
             }
             else{
                 filters = ScanUtils.getFilters(machinaProperties.getFilterSeverity(), machinaProperties.getFilterCwe(),
-                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus());
+                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus(),
+                        machinaProperties.getFilterPath(), machinaProperties.getFilterLanguage());
             }
 
             String mergeEndpoint = properties.getApiUrl().concat(GitLabService.MERGE_PATH);
@@ -218,7 +219,8 @@ public class GitLabController {
             }
             else{
                 filters = ScanUtils.getFilters(machinaProperties.getFilterSeverity(), machinaProperties.getFilterCwe(),
-                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus());
+                        machinaProperties.getFilterCategory(), machinaProperties.getFilterStatus(),
+                        machinaProperties.getFilterPath(), machinaProperties.getFilterLanguage());
             }
             /*Determine emails*/
             List<String> emails = new ArrayList<>();
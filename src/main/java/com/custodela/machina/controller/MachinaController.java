@@ -1,8 +1,15 @@
 package com.custodela.machina.controller;
 
 import com.custodela.machina.config.MachinaProperties;
+import com.custodela.machina.dto.EventResponse;
+import com.custodela.machina.exception.InvalidTokenException;
+import com.custodela.machina.service.CxService;
+import com.custodela.machina.service.JiraService;
 import com.custodela.machina.service.MachinaService;
+import com.custodela.machina.utils.ScanUtils;
 import org.slf4j.Logger;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.beans.ConstructorProperties;
 
@@ -16,11 +23,40 @@ public class MachinaController {
 
     private final MachinaProperties properties;
     private final MachinaService scanService;
+    private final JiraService jiraService;
+    private final CxService cxService;
 
-    @ConstructorProperties({"properties", "scanService"})
-    public MachinaController(MachinaProperties properties, MachinaService scanService) {
+    @ConstructorProperties({"properties", "scanService", "jiraService", "cxService"})
+    public MachinaController(MachinaProperties properties, MachinaService scanService, JiraService jiraService, CxService cxService) {
         this.properties = properties;
         this.scanService = scanService;
+        this.jiraService = jiraService;
+        this.cxService = cxService;
+    }
+
+    /**
+     * Flush cached Jira metadata and Checkmarx reference data, i.e. after a Jira field or workflow change
+     *
+     * @param token machina.token
+     * @return
+     */
+    @PostMapping(value = "/cache/flush")
+    public ResponseEntity<EventResponse> flushCache(@RequestHeader(value = EVENT) String token){
+        validateToken(token);
+        log.info("Flushing Jira metadata and Checkmarx reference data caches");
+        jiraService.invalidateMetadata();
+        cxService.invalidateReferenceData();
+        return ResponseEntity.status(HttpStatus.OK).body(EventResponse.builder()
+                .message("Caches flushed")
+                .success(true)
+                .build());
+    }
+
+    private void validateToken(String token){
+        if(ScanUtils.empty(properties.getToken()) || !properties.getToken().equals(token)){
+            log.error("Request token validation failed");
+            throw new InvalidTokenException();
+        }
     }
 
     @PostMapping(value = "/tmp")
@@ -57,7 +57,9 @@ public class Filter {
         CWE("CWE"),
         OWASP("OWASP"),
         TYPE("TYPE"),
-        STATUS("STATUS");
+        STATUS("STATUS"),
+        PATH("PATH"),
+        LANGUAGE("LANGUAGE");
 
         private String type;
 
@@ -0,0 +1,164 @@
+package com.custodela.machina.dto;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact line number to code snippet map used for issue details.
+ *
+ * Lines are kept as sorted primitive ints alongside their snippets (no boxed keys or hash entries), so iteration is
+ * always in line order.  Issues usually only reference a handful of lines, lookups use a binary search.
+ */
+public class LineDetails extends AbstractMap<Integer, String> {
+
+    private static final int[] NO_LINES = new int[0];
+    private static final String[] NO_SNIPPETS = new String[0];
+    private int[] lines = NO_LINES;
+    private String[] snippets = NO_SNIPPETS;
+    private int size = 0;
+
+    public LineDetails() {
+    }
+
+    /**
+     * @param details
+     * @return the details as LineDetails, copied unless they already are
+     */
+    public static LineDetails of(Map<Integer, String> details) {
+        if (details == null || details instanceof LineDetails) {
+            return (LineDetails) details;
+        }
+        LineDetails lineDetails = new LineDetails();
+        lineDetails.putAll(details);
+        return lineDetails;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer && indexOf((Integer) key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof Integer)) {
+            return null;
+        }
+        int i = indexOf((Integer) key);
+        return i >= 0 ? snippets[i] : null;
+    }
+
+    @Override
+    public String put(Integer key, String value) {
+        int i = indexOf(key);
+        if (i >= 0) {
+            String previous = snippets[i];
+            snippets[i] = value;
+            return previous;
+        }
+        i = -(i + 1);
+        if (size == lines.length) {
+            int capacity = Math.max(2, size + (size >> 1));
+            lines = Arrays.copyOf(lines, capacity);
+            snippets = Arrays.copyOf(snippets, capacity);
+        }
+        System.arraycopy(lines, i, lines, i + 1, size - i);
+        System.arraycopy(snippets, i, snippets, i + 1, size - i);
+        lines[i] = key;
+        snippets[i] = value;
+        size++;
+        return null;
+    }
+
+    @Override
+    public String remove(Object key) {
+        if (!(key instanceof Integer)) {
+            return null;
+        }
+        int i = indexOf((Integer) key);
+        if (i < 0) {
+            return null;
+        }
+        String previous = snippets[i];
+        removeAt(i);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        lines = NO_LINES;
+        snippets = NO_SNIPPETS;
+        size = 0;
+    }
+
+    @Override
+    public Set<Entry<Integer, String>> entrySet() {
+        return new AbstractSet<Entry<Integer, String>>() {
+            @Override
+            public Iterator<Entry<Integer, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int indexOf(int line) {
+        return Arrays.binarySearch(lines, 0, size, line);
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(lines, i + 1, lines, i, size - i - 1);
+        System.arraycopy(snippets, i + 1, snippets, i, size - i - 1);
+        size--;
+        snippets[size] = null;
+    }
+
+    private class EntryIterator implements Iterator<Entry<Integer, String>> {
+        private int next = 0;
+        private int last = -1;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Entry<Integer, String> next() {
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            final int index = last;
+            return new SimpleEntry<Integer, String>(lines[index], snippets[index]) {
+                @Override
+                public String setValue(String value) {
+                    snippets[index] = value;
+                    return super.setValue(value);
+                }
+            };
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            removeAt(last);
+            next = last;
+            last = -1;
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package com.custodela.machina.dto;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 import java.beans.ConstructorProperties;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Representation of Issues for a particular product/scan
@@ -96,7 +100,12 @@ public class ScanResults{
         return "ScanResults(osa=" + this.getOsa()  + ", link=" + this.getLink() + ", files=" + this.getFiles() + ", loc=" + this.getLoc() + ", scanType=" + this.getScanType() + ", xIssues=" + this.getXIssues() + ")";
     }
 
+    /**
+     * Single issue (vulnerability + filename).  Categorical fields (vulnerability, cwe, language, severity, filename)
+     * repeat across many issues and are interned, line details are held as {@link LineDetails}.
+     */
     public static class XIssue{
+        private static final Interner<String> VALUES = Interners.newWeakInterner();
         private String vulnerability;
         private String cwe;
         private String cve;
@@ -107,19 +116,24 @@ public class ScanResults{
         private String filename;
         private List<OsaDetails> osaDetails;
         private Map<Integer, String>  details;
+        private Supplier<String> descriptionSupplier;
 
         @ConstructorProperties({"pathId", "categories", "vulnerability", "cwe", "cve", "description", "language", "severity", "link", "filename", "osaDetails", "details"})
         XIssue(String vulnerability, String cwe, String cve, String description, String language, String severity, String link, String filename, List<OsaDetails> osaDetails, Map<Integer, String> details) {
-            this.vulnerability = vulnerability;
-            this.cwe = cwe;
+            this.vulnerability = intern(vulnerability);
+            this.cwe = intern(cwe);
             this.cve = cve;
             this.description = description;
-            this.language = language;
-            this.severity = severity;
+            this.language = intern(language);
+            this.severity = intern(severity);
             this.link = link;
-            this.filename = filename;
+            this.filename = intern(filename);
             this.osaDetails = osaDetails;
-            this.details = details;
+            this.details = LineDetails.of(details);
+        }
+
+        private static String intern(String value) {
+            return value == null ? null : VALUES.intern(value);
         }
 
         public static XIssueBuilder builder() {
@@ -156,7 +170,14 @@ public class ScanResults{
             return this.cve;
         }
 
-        public String getDescription() {
+        /**
+         * Description of the issue, resolved from the description supplier (if any) the first time it is read
+         */
+        public synchronized String getDescription() {
+            if (this.descriptionSupplier != null) {
+                this.description = this.descriptionSupplier.get();
+                this.descriptionSupplier = null;
+            }
             return this.description;
         }
 
@@ -185,27 +206,37 @@ public class ScanResults{
         }
 
         public void setVulnerability(String vulnerability) {
-            this.vulnerability = vulnerability;
+            this.vulnerability = intern(vulnerability);
         }
 
         public void setCwe(String cwe) {
-            this.cwe = cwe;
+            this.cwe = intern(cwe);
         }
 
         public void setCve(String cve) {
             this.cve = cve;
         }
 
-        public void setDescription(String description) {
+        public synchronized void setDescription(String description) {
             this.description = description;
+            this.descriptionSupplier = null;
+        }
+
+        /**
+         * Defer retrieval of the description until it is actually read (i.e. when an issue body is rendered)
+         *
+         * @param descriptionSupplier
+         */
+        public synchronized void setDescriptionSupplier(Supplier<String> descriptionSupplier) {
+            this.descriptionSupplier = descriptionSupplier;
         }
 
         public void setLanguage(String language) {
-            this.language = language;
+            this.language = intern(language);
         }
 
         public void setSeverity(String severity) {
-            this.severity = severity;
+            this.severity = intern(severity);
         }
 
         public void setLink(String link) {
@@ -213,7 +244,7 @@ public class ScanResults{
         }
 
         public void setFilename(String filename) {
-            this.filename = filename;
+            this.filename = intern(filename);
         }
 
         public void setOsaDetails(List<OsaDetails> osaDetails) {
@@ -221,7 +252,7 @@ public class ScanResults{
         }
 
         public void setDetails(Map<Integer, String> details) {
-            this.details = details;
+            this.details = LineDetails.of(details);
         }
 
         public static class XIssueBuilder {
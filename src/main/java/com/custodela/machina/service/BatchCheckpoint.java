@@ -0,0 +1,131 @@
+package com.custodela.machina.service;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checkpoint of a batch run (cxBatch), one "projectId,scanId" line per project whose results have been processed.
+ *
+ * When a batch is resumed, projects whose latest scan is already in the checkpoint are skipped.  A project with a newer
+ * scan than the one recorded is processed again.
+ */
+public class BatchCheckpoint implements Closeable {
+
+    private static final Logger log = org.slf4j.LoggerFactory.getLogger(BatchCheckpoint.class);
+    private final Path file;
+    private final Map<Integer, Integer> completed = new ConcurrentHashMap<>();
+    private final BufferedWriter writer;
+
+    /**
+     * @param file
+     * @param resume keep (and load) the existing checkpoint, otherwise it is truncated
+     * @throws IOException
+     */
+    public BatchCheckpoint(Path file, boolean resume) throws IOException {
+        this.file = file;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        if (resume) {
+            /*a last line without a newline was only partially written (i.e. the process was killed), it is dropped*/
+            truncatePartialLine();
+            load();
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } else {
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @param projectId
+     * @param scanId
+     * @return true if the results of this scan were already processed
+     */
+    public boolean isCompleted(Integer projectId, Integer scanId) {
+        return scanId != null && scanId.equals(completed.get(projectId));
+    }
+
+    /**
+     * Record a processed project, written through immediately so it survives the process being killed
+     *
+     * @param projectId
+     * @param scanId
+     * @throws IOException
+     */
+    public synchronized void record(Integer projectId, Integer scanId) throws IOException {
+        writer.write(projectId.toString().concat(",").concat(String.valueOf(scanId)));
+        writer.newLine();
+        writer.flush();
+        completed.put(projectId, scanId);
+    }
+
+    public int size() {
+        return completed.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private void truncatePartialLine() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long end = channel.size();
+            ByteBuffer last = ByteBuffer.allocate(1);
+            while (end > 0) {
+                last.clear();
+                channel.read(last, end - 1);
+                if (last.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < channel.size()) {
+                log.warn("Dropping partially written checkpoint entry");
+                channel.truncate(end);
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] ids = line.split(",");
+                try {
+                    completed.put(Integer.parseInt(ids[0].trim()), Integer.parseInt(ids[1].trim()));
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    log.warn("Ignoring invalid checkpoint entry {}", line);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            log.info("No checkpoint found at {}, starting from the beginning", file);
+            return;
+        }
+        log.info("Resuming from checkpoint {}, {} project(s) already processed", file, completed.size());
+    }
+}
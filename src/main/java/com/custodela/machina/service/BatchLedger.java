@@ -0,0 +1,174 @@
+package com.custodela.machina.service;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ledger of the last scan processed for each project across batch runs, one "projectId,scanId,digest" line per entry.
+ *
+ * Unlike the {@link BatchCheckpoint} of a single run, the ledger is kept from one run to the next.  Later lines replace
+ * earlier ones for the same project, the file is compacted to a single line per project when it is opened.
+ *
+ * The ledger of a team may be spread over several files, one per shard writing to it.  Entries of the other files are
+ * read (the latest scan of a project wins), so changing the number of shards does not discard them, but only this
+ * ledger's file is written to.
+ */
+public class BatchLedger implements Closeable {
+
+    private static final Logger log = org.slf4j.LoggerFactory.getLogger(BatchLedger.class);
+    private final Path file;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final BufferedWriter writer;
+
+    public BatchLedger(Path file) throws IOException {
+        this(file, Collections.emptyList());
+    }
+
+    /**
+     * @param file ledger written to
+     * @param shared other ledger files of the same team, read only
+     * @throws IOException
+     */
+    public BatchLedger(Path file, Collection<Path> shared) throws IOException {
+        this.file = file;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Map<Integer, Entry> others = new HashMap<>();
+        for (Path other : shared) {
+            if (!other.equals(file)) {
+                load(other, others, false);
+            }
+        }
+        load(file, entries, true);
+        others.forEach((projectId, entry) -> entries.merge(projectId, entry, BatchLedger::latest));
+        log.info("Loaded ledger {} with {} project(s)", file, entries.size());
+        compact();
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @param projectId
+     * @param scanId latest finished scan of the project
+     * @return true if this scan is the last one processed for the project
+     */
+    public boolean isUnchanged(Integer projectId, Integer scanId) {
+        Entry entry = entries.get(projectId);
+        return entry != null && scanId != null && scanId.equals(entry.scanId);
+    }
+
+    /**
+     * @param projectId
+     * @return digest of the results last processed for the project, or null
+     */
+    public String getDigest(Integer projectId) {
+        Entry entry = entries.get(projectId);
+        return entry == null ? null : entry.digest;
+    }
+
+    /**
+     * Record the scan processed for a project
+     *
+     * @param projectId
+     * @param scanId
+     * @param digest of the processed results
+     * @throws IOException
+     */
+    public synchronized void record(Integer projectId, Integer scanId, String digest) throws IOException {
+        Entry entry = new Entry(scanId, digest);
+        writer.write(format(projectId, entry));
+        writer.newLine();
+        writer.flush();
+        entries.put(projectId, entry);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * @param file
+     * @param entries loaded into
+     * @param replace true if later lines replace earlier ones, else the latest scan is kept
+     */
+    private static void load(Path file, Map<Integer, Entry> entries, boolean replace) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] values = line.split(",");
+                try {
+                    Integer projectId = Integer.parseInt(values[0].trim());
+                    Entry entry = new Entry(Integer.parseInt(values[1].trim()), values.length > 2 ? values[2].trim() : null);
+                    if (replace) {
+                        entries.put(projectId, entry);
+                    } else {
+                        entries.merge(projectId, entry, BatchLedger::latest);
+                    }
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    /*i.e. a partially written last line*/
+                    log.warn("Ignoring invalid ledger entry {}", line);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            log.debug("No ledger found at {}", file);
+        }
+    }
+
+    /*scan ids increase, the entry of the latest scan is the most recent*/
+    private static Entry latest(Entry a, Entry b) {
+        return b.scanId > a.scanId ? b : a;
+    }
+
+    /**
+     * Rewrite the ledger with only the latest entry of each project
+     */
+    private void compact() throws IOException {
+        Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<Integer, Entry> entry : entries.entrySet()) {
+                    out.write(format(entry.getKey(), entry.getValue()));
+                    out.newLine();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static String format(Integer projectId, Entry entry) {
+        return projectId.toString().concat(",").concat(String.valueOf(entry.scanId)).concat(",")
+                .concat(entry.digest == null ? "" : entry.digest);
+    }
+
+    private static class Entry {
+        private final Integer scanId;
+        private final String digest;
+
+        private Entry(Integer scanId, String digest) {
+            this.scanId = scanId;
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.custodela.machina.service;
+
+import com.custodela.machina.dto.ScanResults;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only store of the results of a batch run (cxBatch).
+ *
+ * Once the results of a project have been delivered to the bug tracker they are written to the store as a single
+ * JSON line, only a small {@link Summary} is kept on heap.  Heap use therefore does not grow with the number of
+ * projects in the batch, the full results remain available from the file.
+ *
+ * Issue descriptions are not stored, reading them would resolve descriptions that are retrieved lazily (CxSAST).
+ */
+public class BatchResultStore implements Closeable {
+
+    private static final Logger log = org.slf4j.LoggerFactory.getLogger(BatchResultStore.class);
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .addMixIn(ScanResults.XIssue.class, XIssueMixIn.class);
+    private static final byte[] NEWLINE = "\n".getBytes(StandardCharsets.UTF_8);
+    private final Path file;
+    private final FileChannel channel;
+    private final List<Summary> summaries = new ArrayList<>();
+
+    /**
+     * @param file created if it does not exist, results are appended otherwise
+     * @throws IOException
+     */
+    public BatchResultStore(Path file) throws IOException {
+        this.file = file;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Spill the results of a project to the store
+     *
+     * @param project
+     * @param results may be null if the project has no scan
+     * @return summary kept on heap
+     * @throws IOException
+     */
+    public Summary add(String project, ScanResults results) throws IOException {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("project", project);
+        record.put("results", results);
+        byte[] line = mapper.writeValueAsBytes(record);
+
+        Map<String, Integer> severities = new HashMap<>();
+        int issues = 0;
+        if (results != null && results.getXIssues() != null) {
+            for (ScanResults.XIssue issue : results.getXIssues()) {
+                severities.merge(String.valueOf(issue.getSeverity()), 1, Integer::sum);
+                issues++;
+            }
+        }
+        synchronized (this) {
+            long offset = channel.position();
+            ByteBuffer buffer = ByteBuffer.allocate(line.length + NEWLINE.length);
+            buffer.put(line).put(NEWLINE);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            Summary summary = new Summary(project, issues, severities, offset, line.length);
+            summaries.add(summary);
+            return summary;
+        }
+    }
+
+    /**
+     * Read back the full record (project and results) of a summary
+     *
+     * @param summary
+     * @return
+     * @throws IOException
+     */
+    public JsonNode read(Summary summary) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(summary.length);
+        try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (reader.read(buffer, summary.offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of batch result store ".concat(file.toString()));
+                }
+            }
+        }
+        return mapper.readTree(buffer.array());
+    }
+
+    public synchronized List<Summary> getSummaries() {
+        return Collections.unmodifiableList(new ArrayList<>(summaries));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.force(true);
+        channel.close();
+        log.info("Results of {} project(s) stored in {}", summaries.size(), file);
+    }
+
+    @JsonIgnoreProperties({"description", "descriptionSupplier"})
+    private abstract static class XIssueMixIn {
+    }
+
+    /**
+     * What is kept on heap for each project once its results are spilled
+     */
+    public static class Summary {
+        private final String project;
+        private final int issues;
+        private final Map<String, Integer> severities;
+        private final long offset;
+        private final int length;
+
+        private Summary(String project, int issues, Map<String, Integer> severities, long offset, int length) {
+            this.project = project;
+            this.issues = issues;
+            this.severities = severities;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public String getProject() {
+            return project;
+        }
+
+        public int getIssues() {
+            return issues;
+        }
+
+        /**
+         * @return number of issues by severity
+         */
+        public Map<String, Integer> getSeverities() {
+            return severities;
+        }
+
+        public String toString() {
+            return "BatchResultStore.Summary(project=" + this.project + ", issues=" + this.issues + ", severities=" + this.severities + ")";
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.custodela.machina.service;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Slice of the projects processed by a batch run (cxBatch) when the batch is split across several workers.
+ *
+ * Projects are assigned on a hash of their Cx project id, so the assignment does not depend on the order or number of
+ * projects returned by Checkmarx.  A consistent hash is used, changing the number of shards only moves the projects
+ * of the shards that are added or removed.
+ */
+public final class BatchShard {
+
+    public static final BatchShard NONE = new BatchShard(0, 1);
+    private final int index;
+    private final int count;
+
+    /**
+     * @param index of this shard, from 0 to count - 1
+     * @param count total number of shards
+     */
+    public BatchShard(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard " + index + " of " + count +
+                    ", shard index must be between 0 and shard count - 1");
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param projectId Cx project id
+     * @return true if the project is processed by this shard
+     */
+    public boolean contains(Integer projectId) {
+        return count == 1 || Hashing.consistentHash(Hashing.murmur3_32().hashInt(projectId), count) == index;
+    }
+
+    /**
+     * @return suffix of the files (checkpoint, ledger, results, summary) written by this shard, empty if not sharded
+     */
+    public String getSuffix() {
+        return count == 1 ? "" : "-shard-" + index + "-of-" + count;
+    }
+
+    @Override
+    public String toString() {
+        return "shard " + index + " of " + count;
+    }
+}
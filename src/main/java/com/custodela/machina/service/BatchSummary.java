@@ -0,0 +1,203 @@
+package com.custodela.machina.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Totals of a batch run (cxBatch), written as JSON next to its results.
+ *
+ * When the batch is split in shards each shard writes its own summary, {@link #merge(Collection)} aggregates them.
+ */
+public class BatchSummary {
+
+    private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private String team;
+    private Integer shardIndex = 0;
+    private Integer shardCount = 1;
+    private Integer shards = 1;
+    private Integer projects = 0;
+    private Integer completed = 0;
+    private Integer failed = 0;
+    private Integer skipped = 0;
+    private Integer issues = 0;
+    private Map<String, Integer> severities = new TreeMap<>();
+    private List<String> results = new ArrayList<>();
+
+    public BatchSummary() {
+    }
+
+    public BatchSummary(String team, BatchShard shard) {
+        this.team = team;
+        this.shardIndex = shard.getIndex();
+        this.shardCount = shard.getCount();
+    }
+
+    /**
+     * Add the issues of a project
+     *
+     * @param summary
+     */
+    public void add(BatchResultStore.Summary summary) {
+        this.issues += summary.getIssues();
+        summary.getSeverities().forEach((severity, count) -> this.severities.merge(severity, count, Integer::sum));
+    }
+
+    /**
+     * Aggregate the summaries of the shards of a batch
+     *
+     * @param summaries
+     * @return
+     */
+    public static BatchSummary merge(Collection<BatchSummary> summaries) {
+        BatchSummary merged = new BatchSummary();
+        merged.shards = 0;
+        for (BatchSummary summary : summaries) {
+            if (merged.team == null) {
+                merged.team = summary.team;
+            }
+            merged.shardCount = summary.shardCount;
+            merged.shards += summary.shards;
+            merged.projects += summary.projects;
+            merged.completed += summary.completed;
+            merged.failed += summary.failed;
+            merged.skipped += summary.skipped;
+            merged.issues += summary.issues;
+            summary.severities.forEach((severity, count) -> merged.severities.merge(severity, count, Integer::sum));
+            merged.results.addAll(summary.results);
+        }
+        return merged;
+    }
+
+    public static BatchSummary read(Path file) throws IOException {
+        return mapper.readValue(file.toFile(), BatchSummary.class);
+    }
+
+    /**
+     * Write the summary, replacing any previous one
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void write(Path file) throws IOException {
+        Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            mapper.writeValue(tmp.toFile(), this);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public String getTeam() {
+        return this.team;
+    }
+
+    public void setTeam(String team) {
+        this.team = team;
+    }
+
+    public Integer getShardIndex() {
+        return this.shardIndex;
+    }
+
+    public void setShardIndex(Integer shardIndex) {
+        this.shardIndex = shardIndex;
+    }
+
+    public Integer getShardCount() {
+        return this.shardCount;
+    }
+
+    public void setShardCount(Integer shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * @return number of shards aggregated in this summary
+     */
+    public Integer getShards() {
+        return this.shards;
+    }
+
+    public void setShards(Integer shards) {
+        this.shards = shards;
+    }
+
+    public Integer getProjects() {
+        return this.projects;
+    }
+
+    public void setProjects(Integer projects) {
+        this.projects = projects;
+    }
+
+    public Integer getCompleted() {
+        return this.completed;
+    }
+
+    public void setCompleted(Integer completed) {
+        this.completed = completed;
+    }
+
+    public Integer getFailed() {
+        return this.failed;
+    }
+
+    public void setFailed(Integer failed) {
+        this.failed = failed;
+    }
+
+    public Integer getSkipped() {
+        return this.skipped;
+    }
+
+    public void setSkipped(Integer skipped) {
+        this.skipped = skipped;
+    }
+
+    public Integer getIssues() {
+        return this.issues;
+    }
+
+    public void setIssues(Integer issues) {
+        this.issues = issues;
+    }
+
+    /**
+     * @return number of issues by severity
+     */
+    public Map<String, Integer> getSeverities() {
+        return this.severities;
+    }
+
+    public void setSeverities(Map<String, Integer> severities) {
+        this.severities = severities;
+    }
+
+    /**
+     * @return result store files (batch-&lt;timestamp&gt;.jsonl) of the batch
+     */
+    public List<String> getResults() {
+        return this.results;
+    }
+
+    public void setResults(List<String> results) {
+        this.results = results;
+    }
+
+    public String toString() {
+        return "BatchSummary(team=" + this.team + ", shards=" + this.shards + "/" + this.shardCount + ", projects=" +
+                this.projects + ", completed=" + this.completed + ", failed=" + this.failed + ", skipped=" +
+                this.skipped + ", issues=" + this.issues + ", severities=" + this.severities + ")";
+    }
+}
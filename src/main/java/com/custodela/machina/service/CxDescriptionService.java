@@ -0,0 +1,221 @@
+package com.custodela.machina.service;
+
+import com.custodela.machina.config.CxProperties;
+import com.custodela.machina.exception.CheckmarxLegacyException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retrieves issue descriptions from the legacy SOAP WebService (GetResultDescription).
+ *
+ * Calls are executed on the bounded cxDescription pool and cached by query id + language, as the description is the
+ * same for every result of a given query.  Lookups are normally made lazily, the first time the description of an
+ * issue is read.
+ *
+ * The SOAP session is shared by all lookups, it is established on first use and re-established when a lookup is
+ * rejected (i.e. the session expired).
+ *
+ * The lookups of a scan are summarised (machina.cx.description.scan.*) once the scan has had no lookups for
+ * SCAN_IDLE minutes, or more than RECENT_SCANS scans have had lookups since.  Summaries are published as part of later
+ * lookups.
+ */
+@Service
+public class CxDescriptionService {
+
+    private static final Logger log = org.slf4j.LoggerFactory.getLogger(CxDescriptionService.class);
+    private static final String METRIC_REQUESTS = "machina.cx.description.requests";
+    private static final String METRIC_LATENCY = "machina.cx.description.latency";
+    private static final String METRIC_SCAN_REQUESTS = "machina.cx.description.scan.requests";
+    private static final String METRIC_SCAN_HIT_RATIO = "machina.cx.description.scan.hit.ratio";
+    private static final int RECENT_SCANS = 100;
+    private static final long SCAN_IDLE = 10;
+    private static final long LOGIN_RETRY_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    private final CxProperties cxProperties;
+    private final CxLegacyService cxLegacyService;
+    private final TaskExecutor executor;
+    private final Cache<String, CompletableFuture<String>> cache;
+    private final Cache<Long, Stats> scanStats;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Timer latencyTimer;
+    private String session;
+    private long loginFailedAt = 0;
+
+    @ConstructorProperties({"cxProperties", "cxLegacyService", "executor", "registry"})
+    public CxDescriptionService(CxProperties cxProperties, CxLegacyService cxLegacyService,
+                                @Qualifier("cxDescription") TaskExecutor executor, MeterRegistry registry) {
+        this.cxProperties = cxProperties;
+        this.cxLegacyService = cxLegacyService;
+        this.executor = executor;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(cxProperties.getDescriptionCacheSize())
+                .expireAfterWrite(cxProperties.getDescriptionCacheTtl(), TimeUnit.MINUTES)
+                .build();
+        this.hitCounter = registry.counter(METRIC_REQUESTS, "result", "hit");
+        this.missCounter = registry.counter(METRIC_REQUESTS, "result", "miss");
+        this.latencyTimer = registry.timer(METRIC_LATENCY);
+        DistributionSummary scanHits = registry.summary(METRIC_SCAN_REQUESTS, "result", "hit");
+        DistributionSummary scanMisses = registry.summary(METRIC_SCAN_REQUESTS, "result", "miss");
+        DistributionSummary scanHitRatio = registry.summary(METRIC_SCAN_HIT_RATIO);
+        this.scanStats = CacheBuilder.newBuilder()
+                .maximumSize(RECENT_SCANS)
+                .expireAfterAccess(SCAN_IDLE, TimeUnit.MINUTES)
+                .removalListener((RemovalListener<Long, Stats>) notification -> {
+                    Stats stats = notification.getValue();
+                    if (notification.getCause() == RemovalCause.REPLACED || stats == null) {
+                        return;
+                    }
+                    scanHits.record(stats.getHits());
+                    scanMisses.record(stats.getMisses());
+                    if (stats.getHits() + stats.getMisses() > 0) {
+                        scanHitRatio.record(100.0 * stats.getHits() / (stats.getHits() + stats.getMisses()));
+                    }
+                    log.info("Issue descriptions for scan Id {}: {}", notification.getKey(), stats);
+                })
+                .build();
+    }
+
+    /**
+     * Get the description for a result, served from cache when another result of the same query was already looked up
+     *
+     * @param scanId
+     * @param pathId
+     * @param queryId
+     * @param language
+     * @return description, completing with an empty string if it could not be retrieved
+     */
+    CompletableFuture<String> getDescription(Long scanId, Long pathId, String queryId, String language) {
+        Stats stats = getStats(scanId);
+        String key = queryId.concat(":").concat(String.valueOf(language));
+        AtomicBoolean loaded = new AtomicBoolean(false);
+        CompletableFuture<String> description;
+        try {
+            description = cache.get(key, () -> {
+                loaded.set(true);
+                return CompletableFuture.supplyAsync(() -> fetch(scanId, pathId, stats), executor);
+            });
+        } catch (ExecutionException e) {
+            log.warn("Error occurred getting description for {} / {}", scanId, pathId);
+            log.debug(ExceptionUtils.getStackTrace(e));
+            return CompletableFuture.completedFuture("");
+        }
+        if (loaded.get()) {
+            missCounter.increment();
+            stats.misses.incrementAndGet();
+            /*Failed lookups are not cached, the next result of the same query will try again*/
+            final CompletableFuture<String> loading = description;
+            loading.whenComplete((d, e) -> {
+                if (e != null || d == null || d.isEmpty()) {
+                    cache.asMap().remove(key, loading);
+                }
+            });
+        } else {
+            hitCounter.increment();
+            stats.hits.incrementAndGet();
+        }
+        return description.exceptionally(e -> "");
+    }
+
+    private String fetch(Long scanId, Long pathId, Stats stats) {
+        long start = System.nanoTime();
+        try {
+            String current = getSession(null);
+            if (current == null) {
+                return "";
+            }
+            String description = cxLegacyService.getDescription(current, scanId, pathId);
+            if (description == null) {
+                /*session may have expired, login again and retry once*/
+                current = getSession(current);
+                description = current == null ? null : cxLegacyService.getDescription(current, scanId, pathId);
+            }
+            return description == null ? "" : description;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            latencyTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            stats.latency.addAndGet(elapsed);
+            log.debug("Issue descriptions for scan Id {}: {}", scanId, stats);
+        }
+    }
+
+    /**
+     * @param expired session rejected by the WebService, null if none
+     * @return current session, logging in when there is none yet or it is the expired one.  Null if login failed.
+     */
+    private synchronized String getSession(String expired) {
+        if (session != null && !session.equals(expired)) {
+            return session;
+        }
+        session = null;
+        /*do not attempt a login for every result while the WebService is unavailable*/
+        if (System.currentTimeMillis() - loginFailedAt < LOGIN_RETRY_INTERVAL) {
+            return null;
+        }
+        try {
+            session = cxLegacyService.login(cxProperties.getUsername(), cxProperties.getPassword());
+        } catch (CheckmarxLegacyException | RuntimeException e) {
+            loginFailedAt = System.currentTimeMillis();
+            log.error("Error occurring while logging into Legacy SOAP based WebService - issue description will remain blank");
+            log.debug(ExceptionUtils.getStackTrace(e));
+        }
+        return session;
+    }
+
+    /**
+     * Description lookup counters of a recent scan
+     *
+     * @param scanId
+     * @return
+     */
+    public Stats getStats(Long scanId) {
+        return scanStats.asMap().computeIfAbsent(scanId, id -> new Stats());
+    }
+
+    /**
+     * Description lookup counters for a single scan
+     */
+    public static class Stats {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong latency = new AtomicLong();
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        /**
+         * @return average latency of the SOAP calls in milliseconds
+         */
+        public long getAverageLatency() {
+            long calls = misses.get();
+            return calls == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(latency.get() / calls);
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + getHits() + ", misses=" + getMisses() + ", avgLatencyMs=" + getAverageLatency();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.custodela.machina.service;
+
+import com.custodela.machina.dto.Filter;
+import com.custodela.machina.dto.cx.xml.QueryType;
+import com.custodela.machina.dto.cx.xml.ResultType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+import java.util.List;
+
+/**
+ * Immutable form of the filters of a request, compiled once before the results are processed.
+ *
+ * Values are upper cased (or resolved to Cx state codes) up front, so checking a Query or Result is a set lookup.
+ * An empty set means no filter of that type was requested, and everything passes.
+ */
+final class CxFilterPlan {
+
+    private static final PathMatcher PATH_MATCHER = new AntPathMatcher();
+    static final CxFilterPlan NONE = compile(null);
+
+    private final ImmutableSet<String> severity;
+    private final ImmutableSet<String> cwe;
+    private final ImmutableSet<String> category;
+    private final ImmutableSet<String> language;
+    private final ImmutableList<String> paths;
+    private final ImmutableSet<String> status;
+    private final boolean statusFiltered;
+
+    private CxFilterPlan(ImmutableSet<String> severity, ImmutableSet<String> cwe, ImmutableSet<String> category,
+                         ImmutableSet<String> language, ImmutableList<String> paths, ImmutableSet<String> status,
+                         boolean statusFiltered) {
+        this.severity = severity;
+        this.cwe = cwe;
+        this.category = category;
+        this.language = language;
+        this.paths = paths;
+        this.status = status;
+        this.statusFiltered = statusFiltered;
+    }
+
+    /**
+     * Compile the filters of a request
+     *
+     * @param filters
+     * @return
+     */
+    static CxFilterPlan compile(List<Filter> filters) {
+        ImmutableSet.Builder<String> severity = ImmutableSet.builder();
+        ImmutableSet.Builder<String> cwe = ImmutableSet.builder();
+        ImmutableSet.Builder<String> category = ImmutableSet.builder();
+        ImmutableSet.Builder<String> language = ImmutableSet.builder();
+        ImmutableList.Builder<String> paths = ImmutableList.builder();
+        ImmutableSet.Builder<String> status = ImmutableSet.builder();
+        boolean statusFiltered = false;
+
+        if (filters != null) {
+            for (Filter f : filters) {
+                if (f.getType() == null || f.getValue() == null) {
+                    continue;
+                }
+                String value = f.getValue().toUpperCase();
+                switch (f.getType()) {
+                    case SEVERITY:
+                        severity.add(value);
+                        break;
+                    case CWE:
+                        cwe.add(value);
+                        break;
+                    case TYPE:
+                        category.add(value);
+                        break;
+                    case LANGUAGE:
+                        language.add(value);
+                        break;
+                    case PATH:
+                        paths.add(normalizePath(f.getValue()));
+                        break;
+                    case STATUS:
+                        /*an unknown status still counts as a status filter, it just matches nothing*/
+                        statusFiltered = true;
+                        Integer code = CxService.STATUS_MAP.get(value);
+                        if (code != null) {
+                            status.add(code.toString());
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return new CxFilterPlan(severity.build(), cwe.build(), category.build(), language.build(), paths.build(),
+                status.build(), statusFiltered);
+    }
+
+    /**
+     * Check the Query level criteria (severity, cwe, category, language), only the Query attributes are used
+     *
+     * @param q
+     * @return
+     */
+    boolean matches(QueryType q) {
+        return matches(severity, q.getSeverity()) &&
+                (cwe.isEmpty() || cwe.contains(q.getCweId())) &&
+                matches(category, q.getName()) &&
+                matches(language, q.getLanguage());
+    }
+
+    /**
+     * Check the Result level criteria (status, path), only the Result attributes are used
+     *
+     * @param r
+     * @return
+     */
+    boolean matches(ResultType r) {
+        if (statusFiltered && !status.contains(r.getState())) {
+            return false;
+        }
+        if (paths.isEmpty()) {
+            return true;
+        }
+        if (r.getFileName() == null) {
+            return false;
+        }
+        String file = normalizePath(r.getFileName());
+        for (String p : paths) {
+            if (PATH_MATCHER.match(p, file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check the severity criteria only (OSA results)
+     *
+     * @param value
+     * @return
+     */
+    boolean matchesSeverity(String value) {
+        return matches(severity, value);
+    }
+
+    private static boolean matches(ImmutableSet<String> values, String value) {
+        return values.isEmpty() || (value != null && values.contains(value.toUpperCase()));
+    }
+
+    /*Cx reports may use either separator*/
+    private static String normalizePath(String path) {
+        String normalized = path.replace('\\', '/');
+        return normalized.startsWith("/") ? normalized.substring(1) : normalized;
+    }
+}
@@ -4,12 +4,14 @@ import checkmarx.wsdl.portal.*;
 import com.custodela.machina.config.CxProperties;
 import com.custodela.machina.exception.CheckmarxLegacyException;
 import com.custodela.machina.exception.MachinaException;
+import com.custodela.machina.utils.ScanUtils;
 import org.slf4j.Logger;
 import org.springframework.stereotype.Component;
 import org.springframework.ws.client.core.WebServiceTemplate;
 import org.springframework.ws.soap.client.core.SoapActionCallback;
 
 import java.beans.ConstructorProperties;
+import java.util.regex.Pattern;
 
 /**
  * Checkmarx SOAP WebService Client
@@ -23,11 +25,16 @@ public class CxLegacyService {
     private static final String CX_WS_LOGIN_URI = "http://Checkmarx.com/LoginV2";
     private static final String CX_WS_DESCRIPTION_URI = "http://Checkmarx.com/GetResultDescription";
     private static final String CX_WS_TEAM_URI = "http://Checkmarx.com/CreateNewTeam";
+    private static final Pattern TAG_PATTERN = Pattern.compile("\\<.*?>");
+    private final Pattern htmlStripPattern;
 
     @ConstructorProperties({"properties", "ws"})
     public CxLegacyService(CxProperties properties, WebServiceTemplate ws) {
         this.properties = properties;
         this.ws = ws;
+        /*checkmarx.html-strip may be unset, nothing to strip*/
+        this.htmlStripPattern = ScanUtils.empty(properties.getHtmlStrip()) ? null :
+                Pattern.compile(Pattern.quote(properties.getHtmlStrip()));
     }
 
     /**
@@ -70,6 +77,13 @@ public class CxLegacyService {
         }
     }
 
+    /**
+     * Retrieve the description of a result
+     * @param session
+     * @param scanId
+     * @param pathId
+     * @return description, or null if the request was rejected (i.e. the session expired)
+     */
     String getDescription(String session, Long scanId, Long pathId){
         GetResultDescription request = new GetResultDescription(session);
         request.setPathID(pathId);
@@ -81,13 +95,15 @@ public class CxLegacyService {
                 ws.marshalSendAndReceive(ws.getDefaultUri(), request, new SoapActionCallback(CX_WS_DESCRIPTION_URI));
         try{
             if(!response.getGetResultDescriptionResult().isIsSuccesfull()){
-                log.error(response.getGetResultDescriptionResult().getErrorMessage());
-                return "";
+                log.warn(response.getGetResultDescriptionResult().getErrorMessage());
+                return null;
             }
             else {
                 String description = response.getGetResultDescriptionResult().getResultDescription();
-                description = description.replace(properties.getHtmlStrip(), "");
-                description = description.replaceAll("\\<.*?>", ""); /*Strip tag elements*/
+                if(htmlStripPattern != null) {
+                    description = htmlStripPattern.matcher(description).replaceAll("");
+                }
+                description = TAG_PATTERN.matcher(description).replaceAll(""); /*Strip tag elements*/
                 return description;
             }
         }catch (NullPointerException e){
@@ -0,0 +1,173 @@
+package com.custodela.machina.service;
+
+import com.custodela.machina.config.CxProperties;
+import com.custodela.machina.utils.ScanUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.beans.ConstructorProperties;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local cache of downloaded XML scan reports, stored gzip compressed under checkmarx.report-cache-dir.
+ *
+ * Results of a finished scan do not change, so a cached report can be used in place of generating and downloading a
+ * new one.  The cache is bounded by checkmarx.report-cache-size (MB), least recently used reports are removed first.
+ */
+@Component
+public class CxReportCache {
+
+    private static final Logger log = org.slf4j.LoggerFactory.getLogger(CxReportCache.class);
+    /*bump when the requested report format changes, previously cached reports are then ignored*/
+    private static final String REPORT_FORMAT = "xml-v1";
+    private static final String EXTENSION = ".".concat(REPORT_FORMAT).concat(".gz");
+    private final CxProperties cxProperties;
+
+    @ConstructorProperties({"cxProperties"})
+    public CxReportCache(CxProperties cxProperties) {
+        this.cxProperties = cxProperties;
+    }
+
+    public boolean isEnabled() {
+        return !ScanUtils.empty(cxProperties.getReportCacheDir());
+    }
+
+    /**
+     * Open the cached report of a scan
+     *
+     * @param scanId
+     * @return uncompressed report, or null if the report is not cached
+     */
+    InputStream open(Integer scanId) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Path report = getPath(scanId);
+        try {
+            InputStream in = new GZIPInputStream(Files.newInputStream(report));
+            Files.setLastModifiedTime(report, FileTime.fromMillis(System.currentTimeMillis()));
+            return in;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Unable to read cached report for scan Id {}", scanId);
+            log.debug(ExceptionUtils.getStackTrace(e));
+            remove(scanId);
+            return null;
+        }
+    }
+
+    /**
+     * Store the report of a scan.  The report only becomes visible once it has been written completely.
+     *
+     * Caching is best effort, failures are logged and the report is simply not cached.  Reports that do not fit in the
+     * cache (checkmarx.report-cache-size) are not cached.
+     *
+     * @param scanId
+     * @param report uncompressed report, left in place
+     */
+    void put(Integer scanId, Path report) {
+        long maxSize = getMaxSize();
+        Path tmp = null;
+        try {
+            Path dir = Paths.get(cxProperties.getReportCacheDir());
+            Files.createDirectories(dir);
+            tmp = Files.createTempFile(dir, "scan-".concat(scanId.toString()), ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+                Files.copy(report, out);
+            }
+            if (Files.size(tmp) > maxSize) {
+                log.info("Report for scan Id {} exceeds the report cache size, not cached", scanId);
+                return;
+            }
+            Files.move(tmp, getPath(scanId), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Report for scan Id {} cached", scanId);
+        } catch (IOException e) {
+            log.warn("Unable to cache report for scan Id {}", scanId);
+            log.debug(ExceptionUtils.getStackTrace(e));
+            return;
+        } finally {
+            deleteQuietly(tmp);
+        }
+        evict();
+    }
+
+    /**
+     * Remove the cached report of a scan (i.e. if it could not be read)
+     *
+     * @param scanId
+     */
+    void remove(Integer scanId) {
+        try {
+            Files.deleteIfExists(getPath(scanId));
+        } catch (IOException e) {
+            log.warn("Unable to remove cached report for scan Id {}", scanId);
+        }
+    }
+
+    /**
+     * Remove least recently used reports until the cache is within its size limit
+     */
+    private synchronized void evict() {
+        long maxSize = getMaxSize();
+        List<File> reports = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> files = Files.list(Paths.get(cxProperties.getReportCacheDir()))) {
+            files.filter(p -> p.getFileName().toString().endsWith(EXTENSION))
+                    .map(Path::toFile)
+                    .forEach(reports::add);
+        } catch (IOException e) {
+            log.warn("Unable to list cached reports");
+            log.debug(ExceptionUtils.getStackTrace(e));
+            return;
+        }
+        for (File f : reports) {
+            total += f.length();
+        }
+        if (total <= maxSize) {
+            return;
+        }
+        reports.sort(Comparator.comparingLong(File::lastModified));
+        for (File f : reports) {
+            if (total <= maxSize) {
+                break;
+            }
+            long length = f.length();
+            if (f.delete()) {
+                total -= length;
+                log.debug("Evicted cached report {}", f.getName());
+            }
+        }
+    }
+
+    private long getMaxSize() {
+        return cxProperties.getReportCacheSize() * 1024L * 1024L;
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Unable to remove temporary report file {}", file);
+        }
+    }
+
+    private Path getPath(Integer scanId) {
+        return Paths.get(cxProperties.getReportCacheDir(), "scan-".concat(scanId.toString()).concat(EXTENSION));
+    }
+}
@@ -0,0 +1,284 @@
+package com.custodela.machina.service;
+
+import com.custodela.machina.dto.cx.xml.*;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+
+/**
+ * Streaming (StAX) reader for Checkmarx XML reports.
+ *
+ * Queries are handed to the {@link QueryHandler} one at a time as soon as they are read, so at most one Query is
+ * materialised at any point regardless of the report size.  Only the first PathNode of each Result is read (it is the
+ * only node used for the line/snippet details), the remaining nodes of the path are skipped without being built.
+ *
+ * The {@link CxFilterPlan} is applied as soon as the attributes of a Query or Result have been read, excluded elements
+ * are skipped along with their children and never reach the handler.
+ */
+class CxReportParser {
+
+    private static final String RESULTS = "CxXMLResults";
+    private static final String QUERY = "Query";
+    private static final String RESULT = "Result";
+    private static final String PATH = "Path";
+    private static final String PATH_NODE = "PathNode";
+    private static final String SNIPPET = "Snippet";
+    private static final String LINE = "Line";
+    /*Configured once, creating readers from a configured factory is thread safe*/
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    /**
+     * Callback invoked for every Query of the report, in document order
+     */
+    interface QueryHandler {
+        /**
+         * @param report report header (attributes only, no queries)
+         * @param query  query along with its results
+         */
+        void onQuery(CxXMLResultsType report, QueryType query);
+    }
+
+    /**
+     * Parse the report, passing each Query to the handler as it is read
+     *
+     * @param in
+     * @param plan    filters, Queries and Results not matching are skipped
+     * @param handler
+     * @return report header (attributes only, no queries)
+     * @throws XMLStreamException
+     */
+    CxXMLResultsType parse(InputStream in, CxFilterPlan plan, QueryHandler handler) throws XMLStreamException {
+        XMLStreamReader xsr = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            CxXMLResultsType report = null;
+            while (xsr.hasNext()) {
+                if (xsr.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                if (RESULTS.equals(xsr.getLocalName())) {
+                    report = readReport(xsr);
+                } else if (QUERY.equals(xsr.getLocalName()) && report != null) {
+                    QueryType query = readQuery(xsr, plan);
+                    if (query != null) {
+                        handler.onQuery(report, query);
+                    }
+                }
+            }
+            if (report == null) {
+                throw new XMLStreamException("CxXMLResults element not found in report");
+            }
+            return report;
+        } finally {
+            xsr.close();
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        /* protect against XXE */
+        XMLInputFactory xif = XMLInputFactory.newInstance();
+        xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        xif.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xif.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return xif;
+    }
+
+    private CxXMLResultsType readReport(XMLStreamReader xsr) {
+        CxXMLResultsType report = new CxXMLResultsType();
+        report.setInitiatorName(xsr.getAttributeValue(null, "InitiatorName"));
+        report.setOwner(xsr.getAttributeValue(null, "Owner"));
+        report.setScanId(xsr.getAttributeValue(null, "ScanId"));
+        report.setProjectId(xsr.getAttributeValue(null, "ProjectId"));
+        report.setProjectName(xsr.getAttributeValue(null, "ProjectName"));
+        report.setTeamFullPathOnReportDate(xsr.getAttributeValue(null, "TeamFullPathOnReportDate"));
+        report.setDeepLink(xsr.getAttributeValue(null, "DeepLink"));
+        report.setScanStart(xsr.getAttributeValue(null, "ScanStart"));
+        report.setPreset(xsr.getAttributeValue(null, "Preset"));
+        report.setScanTime(xsr.getAttributeValue(null, "ScanTime"));
+        report.setLinesOfCodeScanned(xsr.getAttributeValue(null, "LinesOfCodeScanned"));
+        report.setFilesScanned(xsr.getAttributeValue(null, "FilesScanned"));
+        report.setReportCreationTime(xsr.getAttributeValue(null, "ReportCreationTime"));
+        report.setTeam(xsr.getAttributeValue(null, "Team"));
+        report.setCheckmarxVersion(xsr.getAttributeValue(null, "CheckmarxVersion"));
+        report.setScanComments(xsr.getAttributeValue(null, "ScanComments"));
+        report.setScanType(xsr.getAttributeValue(null, "ScanType"));
+        report.setSourceOrigin(xsr.getAttributeValue(null, "SourceOrigin"));
+        report.setVisibility(xsr.getAttributeValue(null, "Visibility"));
+        return report;
+    }
+
+    /**
+     * @return the Query with its matching Results, or null if the Query is excluded by the plan
+     */
+    private QueryType readQuery(XMLStreamReader xsr, CxFilterPlan plan) throws XMLStreamException {
+        QueryType query = new QueryType();
+        query.setId(xsr.getAttributeValue(null, "id"));
+        query.setCategories(xsr.getAttributeValue(null, "categories"));
+        query.setCweId(xsr.getAttributeValue(null, "cweId"));
+        query.setName(xsr.getAttributeValue(null, "name"));
+        query.setGroup(xsr.getAttributeValue(null, "group"));
+        query.setSeverity(xsr.getAttributeValue(null, "Severity"));
+        query.setLanguage(xsr.getAttributeValue(null, "Language"));
+        query.setLanguageHash(xsr.getAttributeValue(null, "LanguageHash"));
+        query.setLanguageChangeDate(xsr.getAttributeValue(null, "LanguageChangeDate"));
+        query.setSeverityIndex(xsr.getAttributeValue(null, "SeverityIndex"));
+        query.setQueryPath(xsr.getAttributeValue(null, "QueryPath"));
+        query.setQueryVersionCode(xsr.getAttributeValue(null, "QueryVersionCode"));
+
+        if (!plan.matches(query)) {
+            skip(xsr);
+            return null;
+        }
+        while (nextChild(xsr)) {
+            if (RESULT.equals(xsr.getLocalName())) {
+                ResultType result = readResult(xsr, plan);
+                if (result != null) {
+                    query.getResult().add(result);
+                }
+            } else {
+                skip(xsr);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * @return the Result, or null if it is excluded by the plan
+     */
+    private ResultType readResult(XMLStreamReader xsr, CxFilterPlan plan) throws XMLStreamException {
+        ResultType result = new ResultType();
+        result.setNodeId(xsr.getAttributeValue(null, "NodeId"));
+        result.setFileName(xsr.getAttributeValue(null, "FileName"));
+        result.setStatus(xsr.getAttributeValue(null, "Status"));
+        result.setLine(xsr.getAttributeValue(null, "Line"));
+        result.setColumn(xsr.getAttributeValue(null, "Column"));
+        result.setFalsePositive(xsr.getAttributeValue(null, "FalsePositive"));
+        result.setSeverity(xsr.getAttributeValue(null, "Severity"));
+        result.setAssignToUser(xsr.getAttributeValue(null, "AssignToUser"));
+        result.setState(xsr.getAttributeValue(null, "state"));
+        result.setRemark(xsr.getAttributeValue(null, "Remark"));
+        result.setDeepLink(xsr.getAttributeValue(null, "DeepLink"));
+        result.setSeverityIndex(xsr.getAttributeValue(null, "SeverityIndex"));
+
+        if (!plan.matches(result)) {
+            skip(xsr);
+            return null;
+        }
+        while (nextChild(xsr)) {
+            if (PATH.equals(xsr.getLocalName())) {
+                result.setPath(readPath(xsr));
+            } else {
+                skip(xsr);
+            }
+        }
+        return result;
+    }
+
+    private PathType readPath(XMLStreamReader xsr) throws XMLStreamException {
+        PathType path = new PathType();
+        path.setResultId(xsr.getAttributeValue(null, "ResultId"));
+        path.setPathId(xsr.getAttributeValue(null, "PathId"));
+        path.setSimilarityId(xsr.getAttributeValue(null, "SimilarityId"));
+
+        while (nextChild(xsr)) {
+            /*Only the first node is used for line/snippet details*/
+            if (PATH_NODE.equals(xsr.getLocalName()) && path.getPathNode().isEmpty()) {
+                path.getPathNode().add(readPathNode(xsr));
+            } else {
+                skip(xsr);
+            }
+        }
+        return path;
+    }
+
+    private PathNodeType readPathNode(XMLStreamReader xsr) throws XMLStreamException {
+        PathNodeType node = new PathNodeType();
+        while (nextChild(xsr)) {
+            switch (xsr.getLocalName()) {
+                case "FileName":
+                    node.setFileName(xsr.getElementText());
+                    break;
+                case LINE:
+                    node.setLine(xsr.getElementText());
+                    break;
+                case "Column":
+                    node.setColumn(xsr.getElementText());
+                    break;
+                case "NodeId":
+                    node.setNodeId(xsr.getElementText());
+                    break;
+                case "Name":
+                    node.setName(xsr.getElementText());
+                    break;
+                case "Type":
+                    node.setType(xsr.getElementText());
+                    break;
+                case "Length":
+                    node.setLength(xsr.getElementText());
+                    break;
+                case SNIPPET:
+                    node.setSnippet(readSnippet(xsr));
+                    break;
+                default:
+                    skip(xsr);
+            }
+        }
+        return node;
+    }
+
+    private SnippetType readSnippet(XMLStreamReader xsr) throws XMLStreamException {
+        SnippetType snippet = new SnippetType();
+        while (nextChild(xsr)) {
+            if (LINE.equals(xsr.getLocalName())) {
+                LineType line = new LineType();
+                while (nextChild(xsr)) {
+                    if ("Number".equals(xsr.getLocalName())) {
+                        line.setNumber(xsr.getElementText());
+                    } else if ("Code".equals(xsr.getLocalName())) {
+                        line.setCode(xsr.getElementText());
+                    } else {
+                        skip(xsr);
+                    }
+                }
+                snippet.setLine(line);
+            } else {
+                skip(xsr);
+            }
+        }
+        return snippet;
+    }
+
+    /**
+     * Advance to the next child element of the current element
+     *
+     * @return true if positioned on the start of a child element, false once the end of the current element is reached
+     */
+    private boolean nextChild(XMLStreamReader xsr) throws XMLStreamException {
+        while (xsr.hasNext()) {
+            int event = xsr.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skip the current element along with all of its children
+     */
+    private void skip(XMLStreamReader xsr) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && xsr.hasNext()) {
+            int event = xsr.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.custodela.machina.service;
+
+import com.custodela.machina.config.CxProperties;
+import com.custodela.machina.exception.MachinaException;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.beans.ConstructorProperties;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks submitted Cx scans until they complete.
+ *
+ * In-flight scans are kept in a registry which is polled on a fixed delay by a single scheduler thread, so the number
+ * of threads does not depend on the number of scans being waited on.  Callers are notified through the returned
+ * CompletableFuture.
+ */
+@Service
+public class CxScanWatcher {
+
+    private static final Logger log = org.slf4j.LoggerFactory.getLogger(CxScanWatcher.class);
+    private static final Map<Integer, String> STATUS_NAMES = ImmutableMap.<Integer, String>builder()
+            .put(CxService.SCAN_STATUS_NEW, "New")
+            .put(CxService.SCAN_STATUS_PRESCAN, "PreScan")
+            .put(CxService.SCAN_STATUS_QUEUED, "Queued")
+            .put(CxService.SCAN_STATUS_SCANNING, "Scanning")
+            .put(CxService.SCAN_STATUS_POST_SCAN, "PostScan")
+            .put(CxService.SCAN_STATUS_FINISHED, "Finished")
+            .put(CxService.SCAN_STATUS_CANCELED, "Canceled")
+            .put(CxService.SCAN_STATUS_FAILED, "Failed")
+            .put(CxService.SCAN_STATUS_SOURCE_PULLING, "SourcePulling")
+            .build();
+    private final CxService cxService;
+    private final CxProperties cxProperties;
+    private final TaskScheduler scheduler;
+    private final MeterRegistry registry;
+    private final Map<Integer, WatchedScan> scans = new ConcurrentHashMap<>();
+
+    @ConstructorProperties({"cxService", "cxProperties", "scheduler", "registry"})
+    public CxScanWatcher(CxService cxService, CxProperties cxProperties,
+                         @Qualifier("scanWatcher") TaskScheduler scheduler, MeterRegistry registry) {
+        this.cxService = cxService;
+        this.cxProperties = cxProperties;
+        this.scheduler = scheduler;
+        this.registry = registry;
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("machina.cx.scans.inflight", scans, Map::size).register(registry);
+        for (Map.Entry<Integer, String> status : STATUS_NAMES.entrySet()) {
+            Gauge.builder("machina.cx.scans.status", scans, s -> countByStatus(status.getKey()))
+                    .tag("status", status.getValue())
+                    .register(registry);
+        }
+        scheduler.scheduleWithFixedDelay(this::poll, TimeUnit.SECONDS.toMillis(cxProperties.getScanPollInterval()));
+    }
+
+    /**
+     * Watch a scan until it finishes
+     *
+     * @param scanId
+     * @return completes with the final status (Finished or Canceled), or exceptionally if the scan fails or times out
+     */
+    public CompletableFuture<Integer> watch(Integer scanId) {
+        WatchedScan scan = scans.computeIfAbsent(scanId, WatchedScan::new);
+        log.info("Waiting for completion of scan Id {}, {} scan(s) in flight", scanId, scans.size());
+        return scan.future;
+    }
+
+    /**
+     * Number of scans currently being watched, by status name
+     *
+     * @return
+     */
+    public Map<String, Integer> getStatusBreakdown() {
+        Map<String, Integer> breakdown = new HashMap<>();
+        for (WatchedScan scan : scans.values()) {
+            breakdown.merge(statusName(scan.status), 1, Integer::sum);
+        }
+        return breakdown;
+    }
+
+    /**
+     * Single tick, checks the status of every in-flight scan
+     */
+    void poll() {
+        if (scans.isEmpty()) {
+            return;
+        }
+        log.debug("Checking status of {} scan(s)", scans.size());
+        long timeout = TimeUnit.MINUTES.toMillis(cxProperties.getScanTimeout());
+        for (WatchedScan scan : scans.values()) {
+            try {
+                Integer status = cxService.getScanStatus(scan.scanId);
+                if (!status.equals(scan.status) && !status.equals(CxService.UNKNOWN_INT)) {
+                    transition(scan, status);
+                }
+                if (status.equals(CxService.SCAN_STATUS_FINISHED) || status.equals(CxService.SCAN_STATUS_CANCELED)) {
+                    complete(scan);
+                    scan.future.complete(status);
+                } else if (status.equals(CxService.SCAN_STATUS_FAILED)) {
+                    complete(scan);
+                    scan.future.completeExceptionally(new MachinaException("Scan failed"));
+                } else if (System.currentTimeMillis() - scan.submitted >= timeout) {
+                    log.error("Scan timeout exceeded for scan Id {}.  {} minutes", scan.scanId, cxProperties.getScanTimeout());
+                    complete(scan);
+                    scan.future.completeExceptionally(new MachinaException("Timeout exceeded during scan"));
+                }
+            } catch (RuntimeException e) {
+                /*keep watching, the status is checked again on the next tick*/
+                log.error("Error occurred while checking status of scan Id {}", scan.scanId);
+                log.error(ExceptionUtils.getStackTrace(e));
+            }
+        }
+    }
+
+    private void transition(WatchedScan scan, Integer status) {
+        long now = System.currentTimeMillis();
+        if (scan.status != null) {
+            registry.timer("machina.cx.scans.state.duration", "status", statusName(scan.status))
+                    .record(now - scan.stateSince, TimeUnit.MILLISECONDS);
+        }
+        log.debug("Scan Id {} status changed from {} to {}", scan.scanId, statusName(scan.status), statusName(status));
+        scan.status = status;
+        scan.stateSince = now;
+    }
+
+    private void complete(WatchedScan scan) {
+        scans.remove(scan.scanId);
+        log.info("Scan Id {} completed with status {} after {} seconds", scan.scanId, statusName(scan.status),
+                TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - scan.submitted));
+    }
+
+    private int countByStatus(Integer status) {
+        int count = 0;
+        for (WatchedScan scan : scans.values()) {
+            if (status.equals(scan.status)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String statusName(Integer status) {
+        if (status == null) {
+            return "Unknown";
+        }
+        return STATUS_NAMES.getOrDefault(status, status.toString());
+    }
+
+    private static class WatchedScan {
+        private final Integer scanId;
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+        private final long submitted = System.currentTimeMillis();
+        private volatile Integer status;
+        private volatile long stateSince = submitted;
+
+        private WatchedScan(Integer scanId) {
+            this.scanId = scanId;
+        }
+    }
+}
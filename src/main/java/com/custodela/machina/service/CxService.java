@@ -2,43 +2,57 @@ package com.custodela.machina.service;
 
 import com.custodela.machina.config.CxProperties;
 import com.custodela.machina.dto.Filter;
+import com.custodela.machina.dto.LineDetails;
 import com.custodela.machina.dto.ScanResults;
 import com.custodela.machina.dto.cx.*;
 import com.custodela.machina.dto.cx.xml.CxXMLResultsType;
 import com.custodela.machina.dto.cx.xml.QueryType;
 import com.custodela.machina.dto.cx.xml.ResultType;
 import com.custodela.machina.exception.CheckmarxLegacyException;
-import com.custodela.machina.exception.InvalidCredentialsException;
 import com.custodela.machina.exception.MachinaException;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamReader;
 import java.beans.ConstructorProperties;
-import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.time.LocalDateTime;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class used to orchestrate submitting scans and retrieving results
@@ -49,10 +63,24 @@ public class CxService {
     private static final Logger log = org.slf4j.LoggerFactory.getLogger(CxService.class);
     private final CxProperties cxProperties;
     private final CxLegacyService cxLegacyService;
+    private final CxDescriptionService cxDescriptionService;
+    private final CxTokenService cxTokenService;
+    private final CxReportCache reportCache;
     private final RestTemplate restTemplate;
-    private String token = null;
-    private LocalDateTime tokenExpires = null;
-    private static final String LOGIN = "/auth/identity/connect/token";
+    private final CxReportParser reportParser = new CxReportParser();
+    private final ForkJoinPool reportPool;
+    private final TaskExecutor referenceExecutor;
+    /*Reference data (teams, presets, engine configurations), keyed by name and refreshed in the background*/
+    private final LoadingCache<String, Map<String, String>> teamCache;
+    private final LoadingCache<String, Map<String, Integer>> presetCache;
+    private final LoadingCache<String, Map<String, Integer>> engineCache;
+    /*Project index, teamId -> project name -> project*/
+    private final LoadingCache<String, Map<String, Map<String, CxProject>>> projectCache;
+    /*Recent lookups of teams missing from the cached teams, including misses (UNKNOWN)*/
+    private final Cache<String, String> teamLookups;
+    /*Recent direct lookups of projects missing from the index, including misses (UNKNOWN_INT)*/
+    private final Cache<String, Integer> projectLookups;
+    private static final String REFERENCE_KEY = "all";
     private static final String TEAMS = "/auth/teams";
     private static final String PROJECTS = "/projects";
     private static final String PROJECT = "/projects/{id}";
@@ -71,6 +99,8 @@ public class CxService {
     public static final String UNKNOWN = "-1";
     public static final Integer UNKNOWN_INT = -1;
     public static final String OSA_VULN = "Vulnerable_Library";
+    private static final ObjectMapper OSA_MAPPER = new ObjectMapper();
+    private static final int PARALLEL_BATCH_RESULTS = 20000;
 
     public static final Integer SCAN_STATUS_NEW = 1;
     public static final Integer SCAN_STATUS_PRESCAN = 2;
@@ -83,18 +113,79 @@ public class CxService {
     public static final Integer SCAN_STATUS_SOURCE_PULLING = 10;
     public static final Integer SCAN_STATUS_NONE = 1001;
     /*report statuses TODO*/
+    public static final Integer REPORT_STATUS_IN_PROCESS = 1;
     public static final Integer REPORT_STATUS_CREATED = 2;
+    public static final Integer REPORT_STATUS_FAILED = 3;
     public static final Integer REPORT_STATUS_FINISHED = 7;
     static final Map<String, Integer> STATUS_MAP = ImmutableMap.of(
             "CONFIRMED", 2,
             "URGENT", 3
     );
 
-    @ConstructorProperties({"cxProperties", "cxLegacyService", "restTemplate"})
-    public CxService(CxProperties cxProperties, CxLegacyService cxLegacyService, RestTemplate restTemplate) {
+    @ConstructorProperties({"cxProperties", "cxLegacyService", "cxDescriptionService", "cxTokenService", "reportCache", "restTemplate", "reportPool", "referenceExecutor", "registry"})
+    public CxService(CxProperties cxProperties, CxLegacyService cxLegacyService, CxDescriptionService cxDescriptionService,
+                     CxTokenService cxTokenService, CxReportCache reportCache, RestTemplate restTemplate,
+                     @Qualifier("cxReport") ForkJoinPool reportPool, @Qualifier("cxReference") TaskExecutor referenceExecutor,
+                     MeterRegistry registry) {
         this.cxProperties = cxProperties;
         this.cxLegacyService = cxLegacyService;
+        this.cxDescriptionService = cxDescriptionService;
+        this.cxTokenService = cxTokenService;
+        this.reportCache = reportCache;
         this.restTemplate = restTemplate;
+        this.reportPool = reportPool;
+        this.referenceExecutor = referenceExecutor;
+        this.teamCache = referenceCache(this::loadTeams, "cx.teams", cxProperties.getReferenceCacheTtl(), registry);
+        this.presetCache = referenceCache(this::loadPresets, "cx.presets", cxProperties.getReferenceCacheTtl(), registry);
+        this.engineCache = referenceCache(this::loadScanConfigurations, "cx.engineConfigurations", cxProperties.getReferenceCacheTtl(), registry);
+        this.projectCache = referenceCache(this::loadProjectIndex, "cx.projects", cxProperties.getProjectCacheTtl(), registry);
+        this.teamLookups = lookupCache(cxProperties.getLookupCacheTtl());
+        this.projectLookups = lookupCache(cxProperties.getLookupCacheTtl());
+    }
+
+    private static <V> Cache<String, V> lookupCache(Integer ttl){
+        return CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Build a single entry cache for a reference data lookup map.  Once the TTL has passed the map keeps being served
+     * while it is reloaded in the background, the previous map is retained if the reload fails.
+     */
+    private <V> LoadingCache<String, Map<String, V>> referenceCache(Callable<Map<String, V>> loader, String name, Integer ttl, MeterRegistry registry){
+        CacheLoader<String, Map<String, V>> cacheLoader = new CacheLoader<String, Map<String, V>>() {
+            @Override
+            public Map<String, V> load(String key) throws Exception {
+                return loader.call();
+            }
+        };
+        LoadingCache<String, Map<String, V>> cache = CacheBuilder.newBuilder()
+                .refreshAfterWrite(ttl, TimeUnit.MINUTES)
+                .recordStats()
+                .build(CacheLoader.asyncReloading(cacheLoader, referenceExecutor));
+        GuavaCacheMetrics.monitor(registry, cache, name);
+        return cache;
+    }
+
+    private <V> Map<String, V> getReferenceData(LoadingCache<String, Map<String, V>> cache, String type) throws MachinaException{
+        try {
+            return cache.get(REFERENCE_KEY);
+        } catch (ExecutionException | UncheckedExecutionException e){
+            log.error("Error occurred while retrieving {}", type);
+            log.error(ExceptionUtils.getStackTrace(e));
+            throw new MachinaException("Error obtaining ".concat(type));
+        }
+    }
+
+    /**
+     * Discard cached teams, presets and engine configurations, they will be reloaded on next use
+     */
+    public void invalidateReferenceData(){
+        teamCache.invalidateAll();
+        teamLookups.invalidateAll();
+        presetCache.invalidateAll();
+        engineCache.invalidateAll();
     }
 
     /**
@@ -177,6 +268,26 @@ public class CxService {
         return UNKNOWN_INT;
     }
 
+    /**
+     * Get the number of lines of code of a given scanId
+     *
+     * @param scanId
+     * @return
+     */
+    Integer getScanLinesOfCode(Integer scanId){
+        HttpEntity httpEntity = new HttpEntity<>(createAuthHeaders());
+        try {
+            ResponseEntity<String> scan = restTemplate.exchange(cxProperties.getUrl().concat(SCAN_STATUS), HttpMethod.GET, httpEntity, String.class, scanId);
+            JSONObject obj = new JSONObject(scan.getBody());
+            return obj.getJSONObject("scanState").getInt("linesOfCode");
+        }catch (HttpStatusCodeException e){
+            log.warn("HTTP Status Code of {} while getting lines of code for scan Id {}", e.getStatusCode(), scanId);
+        }catch (JSONException e){
+            log.debug("Lines of code not available for scan Id {}", scanId);
+        }
+        return UNKNOWN_INT;
+    }
+
     /**
      * Generate a scan report request (xml) based on ScanId
      * @param scanId
@@ -231,56 +342,91 @@ public class CxService {
 
     /**
      * Retrieve the report by reportId, mapped to ScanResults DTO, applying filtering as requested
+     *
+     * The report is streamed from the response body straight into the parser, it is never held in memory as a whole
      * @param reportId
      * @param filter
      * @return
      * @throws MachinaException
      */
     ScanResults getReportContent(Integer reportId, List<Filter> filter) throws MachinaException{
-        HttpHeaders headers = createAuthHeaders();
-        headers.setContentType(MediaType.APPLICATION_XML);
-        HttpEntity httpEntity = new HttpEntity<>(headers);
-        String session = null;
-        try{
-            /* login to legacy SOAP CX Client to retrieve description */
-            session = cxLegacyService.login(cxProperties.getUsername(), cxProperties.getPassword());
+        return getReportContent(null, reportId, filter);
+    }
+
+    /**
+     * Retrieve the cached report of a scan, mapped to ScanResults DTO, applying filtering as requested
+     *
+     * @param scanId
+     * @param filter
+     * @return results, or null if the report of the scan is not cached
+     */
+    ScanResults getCachedReportContent(Integer scanId, List<Filter> filter){
+        InputStream xmlStream = reportCache.open(scanId);
+        if(xmlStream == null){
+            return null;
         }
-        catch (CheckmarxLegacyException e){
-            log.error("Error occurring while logging into Legacy SOAP based WebService - issue description will remain blank");
+        log.info("Using cached report for scan Id {}", scanId);
+        try (InputStream in = xmlStream) {
+            List<ScanResults.XIssue> xIssueList = new ArrayList<>();
+            CxXMLResultsType cxResults = parseReport(in, filter, true, xIssueList);
+            return getScanResults(cxResults, xIssueList);
+        } catch (XMLStreamException | IOException e){
+            log.warn("Error with cached XML report for scan Id {}, report will be downloaded again", scanId);
+            log.debug(ExceptionUtils.getStackTrace(e));
+            reportCache.remove(scanId);
+            return null;
         }
+    }
+
+    /**
+     * Retrieve the report by reportId, mapped to ScanResults DTO, applying filtering as requested
+     *
+     * When the report cache is enabled the report is downloaded to a temporary file and parsed from it, it is then
+     * added to the cache.  Failing to cache the report does not fail the retrieval.
+     * @param scanId scan the report was generated for, null if the report is not to be cached
+     * @param reportId
+     * @param filter
+     * @return
+     * @throws MachinaException
+     */
+    ScanResults getReportContent(Integer scanId, Integer reportId, List<Filter> filter) throws MachinaException{
+        HttpHeaders headers = createAuthHeaders();
+        headers.setContentType(MediaType.APPLICATION_XML);
         log.info("Retrieving report contents of report Id {} in XML format", reportId);
         try {
-            ResponseEntity<String> resultsXML = restTemplate.exchange(cxProperties.getUrl().concat(REPORT_DOWNLOAD), HttpMethod.GET, httpEntity, String.class, reportId);
-            log.info("Report downloaded for report Id {}", reportId);
-            InputStream xmlStream = new ByteArrayInputStream(Objects.requireNonNull(resultsXML.getBody()).getBytes());
-
-            /* protect against XXE */
-            JAXBContext jc = JAXBContext.newInstance(CxXMLResultsType.class);
-            XMLInputFactory xif = XMLInputFactory.newInstance();
-            xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
-            xif.setProperty(XMLInputFactory.SUPPORT_DTD, false);
-            xif.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE,false);
-            XMLStreamReader xsr = xif.createXMLStreamReader(xmlStream);
-            Unmarshaller unmarshaller = jc.createUnmarshaller();
-
             List<ScanResults.XIssue> xIssueList = new ArrayList<>();
-            CxXMLResultsType cxResults = (CxXMLResultsType) unmarshaller.unmarshal(xsr);
-            ScanResults.ScanResultsBuilder cxScanBuilder = ScanResults.builder();
-            cxScanBuilder.projectId(cxResults.getProjectId());
-            cxScanBuilder.link(cxResults.getDeepLink());
-            cxScanBuilder.files(cxResults.getFilesScanned());
-            cxScanBuilder.loc(cxResults.getLinesOfCodeScanned());
-            cxScanBuilder.scanType(cxResults.getScanType());
-            getIssues(filter, session, xIssueList, cxResults);
-            cxScanBuilder.xIssues(xIssueList);
-            return cxScanBuilder.build();
+            CxXMLResultsType cxResults = restTemplate.execute(cxProperties.getUrl().concat(REPORT_DOWNLOAD), HttpMethod.GET,
+                    request -> request.getHeaders().putAll(headers),
+                    response -> {
+                        try {
+                            if(scanId != null && reportCache.isEnabled()) {
+                                Path report = Files.createTempFile("scan-".concat(scanId.toString()), ".xml");
+                                try {
+                                    Files.copy(response.getBody(), report, StandardCopyOption.REPLACE_EXISTING);
+                                    CxXMLResultsType results;
+                                    try (InputStream in = Files.newInputStream(report)) {
+                                        results = parseReport(in, filter, true, xIssueList);
+                                    }
+                                    reportCache.put(scanId, report);
+                                    return results;
+                                } finally {
+                                    Files.deleteIfExists(report);
+                                }
+                            }
+                            return parseReport(response.getBody(), filter, true, xIssueList);
+                        } catch (XMLStreamException e) {
+                            throw new IOException(e);
+                        }
+                    }, reportId);
+            log.info("Report downloaded for report Id {}", reportId);
+            return getScanResults(cxResults, xIssueList);
 
         }catch (HttpStatusCodeException e) {
             log.error("HTTP Status Code of {} while getting downloading report contents of report Id {}", e.getStatusCode(), reportId);
             e.printStackTrace();
             throw new MachinaException("Error while processing scan results for report Id ".concat(reportId.toString()));
         }
-        catch (XMLStreamException | JAXBException e){
+        catch (RestClientException e){
             log.error("Error with XML report");
             e.printStackTrace();
             throw new MachinaException("Error while processing scan results for report Id ".concat(reportId.toString()));
@@ -293,6 +439,17 @@ public class CxService {
         }
     }
 
+    private ScanResults getScanResults(CxXMLResultsType cxResults, List<ScanResults.XIssue> xIssueList){
+        ScanResults.ScanResultsBuilder cxScanBuilder = ScanResults.builder();
+        cxScanBuilder.projectId(cxResults.getProjectId());
+        cxScanBuilder.link(cxResults.getDeepLink());
+        cxScanBuilder.files(cxResults.getFilesScanned());
+        cxScanBuilder.loc(cxResults.getLinesOfCodeScanned());
+        cxScanBuilder.scanType(cxResults.getScanType());
+        cxScanBuilder.xIssues(xIssueList);
+        return cxScanBuilder.build();
+    }
+
     /**
      * Parse CX report file, mapped to ScanResults DTO, applying filtering as requested
      *
@@ -306,37 +463,19 @@ public class CxService {
         if(file == null){
             throw new MachinaException("File not provided for processing of results");
         }
-        String session = null;
-        try{
-            if(!cxProperties.getOffline()) {
-                session = cxLegacyService.login(cxProperties.getUsername(), cxProperties.getPassword());
-            }
-        }
-        catch (CheckmarxLegacyException e){
-            log.error("Error occurring while logging into Legacy SOAP based WebService - issue description will remain blank");
-        }
-        try {
-
-            /* protect against XXE */
-            JAXBContext jc = JAXBContext.newInstance(CxXMLResultsType.class);
-            XMLInputFactory xif = XMLInputFactory.newInstance();
-            xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
-            xif.setProperty(XMLInputFactory.SUPPORT_DTD, false);
-            xif.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
-            Unmarshaller unmarshaller = jc.createUnmarshaller();
+        try (InputStream xmlStream = new FileInputStream(file)) {
 
             List<ScanResults.XIssue> issueList = new ArrayList<>();
-            CxXMLResultsType cxResults = (CxXMLResultsType) unmarshaller.unmarshal(file);
+            CxXMLResultsType cxResults = parseReport(xmlStream, filter, !cxProperties.getOffline(), issueList);
             ScanResults.ScanResultsBuilder cxScanBuilder = ScanResults.builder();
             cxScanBuilder.link(cxResults.getDeepLink());
             cxScanBuilder.files(cxResults.getFilesScanned());
             cxScanBuilder.loc(cxResults.getLinesOfCodeScanned());
             cxScanBuilder.scanType(cxResults.getScanType());
-            getIssues(filter, session, issueList, cxResults);
             cxScanBuilder.xIssues(issueList);
             return cxScanBuilder.build();
 
-        } catch (JAXBException e){
+        } catch (XMLStreamException | IOException e){
             log.error("Error with XML report");
             e.printStackTrace();
             throw new MachinaException("Error while processing scan results");
@@ -349,6 +488,125 @@ public class CxService {
     }
 
     /**
+     * Stream the XML report through the parser, mapping each Query to issues as soon as it has been read
+     *
+     * Issue descriptions are not retrieved here, they are looked up when first read by the issue tracker
+     *
+     * @param xmlStream
+     * @param filter
+     * @param descriptions true if descriptions are to be looked up from the legacy SOAP WebService
+     * @param cxIssueList issues are added in the order they are first found
+     * @return report header details
+     * @throws XMLStreamException
+     */
+    private CxXMLResultsType parseReport(InputStream xmlStream, List<Filter> filter, boolean descriptions, List<ScanResults.XIssue> cxIssueList) throws XMLStreamException {
+        /*Issues indexed by vuln+filename, see XIssue equals/hashCode*/
+        Map<ScanResults.XIssue, ScanResults.XIssue> issueIndex = new LinkedHashMap<>();
+        /*Filtered Queries and Results are skipped by the parser, they never reach getIssues*/
+        CxFilterPlan plan = CxFilterPlan.compile(filter);
+        CxXMLResultsType cxResults;
+        if(cxProperties.getReportParallelism() > 1){
+            ParallelIssueHandler handler = new ParallelIssueHandler(descriptions, issueIndex);
+            cxResults = reportParser.parse(xmlStream, plan, handler);
+            handler.flush();
+        }
+        else {
+            cxResults = reportParser.parse(xmlStream, plan, (report, query) -> getIssues(descriptions, issueIndex, report, query));
+        }
+        cxIssueList.addAll(issueIndex.values());
+        return cxResults;
+    }
+
+    /**
+     * Collects Queries as they are read and maps them to issues on the report pool, a batch at a time.
+     *
+     * Each Query is a separate unit of work producing its own partial issue map.  Partial maps are merged in Query order,
+     * the same way as results are merged when processed sequentially, so the issues (order and details) are identical.
+     */
+    private class ParallelIssueHandler implements CxReportParser.QueryHandler {
+        private final boolean descriptions;
+        private final Map<ScanResults.XIssue, ScanResults.XIssue> issueIndex;
+        private final List<QueryType> batch = new ArrayList<>();
+        private CxXMLResultsType report;
+        private int batchResults = 0;
+
+        private ParallelIssueHandler(boolean descriptions, Map<ScanResults.XIssue, ScanResults.XIssue> issueIndex) {
+            this.descriptions = descriptions;
+            this.issueIndex = issueIndex;
+        }
+
+        @Override
+        public void onQuery(CxXMLResultsType report, QueryType query) {
+            this.report = report;
+            batch.add(query);
+            batchResults += query.getResult().size();
+            /*bounds the number of results held in memory*/
+            if (batchResults >= PARALLEL_BATCH_RESULTS) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            mergeIssues(issueIndex, reportPool.invoke(new IssueTask(descriptions, report, batch, 0, batch.size())));
+            batch.clear();
+            batchResults = 0;
+        }
+    }
+
+    /**
+     * Maps a range of Queries to issues, splitting the range in half until a single Query remains
+     */
+    private class IssueTask extends RecursiveTask<Map<ScanResults.XIssue, ScanResults.XIssue>> {
+        private final boolean descriptions;
+        private final CxXMLResultsType report;
+        private final List<QueryType> queries;
+        private final int from;
+        private final int to;
+
+        private IssueTask(boolean descriptions, CxXMLResultsType report, List<QueryType> queries, int from, int to) {
+            this.descriptions = descriptions;
+            this.report = report;
+            this.queries = queries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<ScanResults.XIssue, ScanResults.XIssue> compute() {
+            if (to - from <= 1) {
+                Map<ScanResults.XIssue, ScanResults.XIssue> issues = new LinkedHashMap<>();
+                for (int i = from; i < to; i++) {
+                    getIssues(descriptions, issues, report, queries.get(i));
+                }
+                return issues;
+            }
+            int mid = (from + to) >>> 1;
+            IssueTask left = new IssueTask(descriptions, report, queries, from, mid);
+            left.fork();
+            Map<ScanResults.XIssue, ScanResults.XIssue> right = new IssueTask(descriptions, report, queries, mid, to).compute();
+            Map<ScanResults.XIssue, ScanResults.XIssue> issues = left.join();
+            mergeIssues(issues, right);
+            return issues;
+        }
+    }
+
+    /**
+     * Merge issues found later in the report into the issues found before them
+     */
+    private void mergeIssues(Map<ScanResults.XIssue, ScanResults.XIssue> issueIndex, Map<ScanResults.XIssue, ScanResults.XIssue> issues) {
+        for (ScanResults.XIssue issue : issues.values()) {
+            checkForDuplicateIssue(issueIndex, issue.getDetails(), issue);
+        }
+    }
+
+    /**
+     * Parse CX OSA vulnerabilities/libraries reports, mapped to ScanResults DTO with one issue per vulnerable library
+     *
+     * The vulnerabilities report is streamed one entry at a time, so memory depends on the number of libraries rather
+     * than the size of the report.
      *
      * @param vulnsFile
      * @param libsFile
@@ -361,31 +619,18 @@ public class CxService {
             throw new MachinaException("Files not provided for processing of OSA results");
         }
         try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            List<ScanResults.XIssue> issueList = new ArrayList<>();
-
-            //convert json string to object
-            List<CxOsa> osaVulns = objectMapper.readValue(vulnsFile, new TypeReference<List<CxOsa>>(){});
-            List<CxOsaLib> osaLibs = objectMapper.readValue(libsFile, new TypeReference<List<CxOsaLib>>(){});
-            Map<String, CxOsaLib> libsMap = getOsaLibsMap(osaLibs);
-            Map<String, Integer> severityMap = ImmutableMap.of(
-                    "LOW", 1,
-                    "MEDIUM", 2,
-                    "HIGH", 3
-            );
-
-            for(CxOsa o: osaVulns){
-
-                if(filterOsa(filter, o) && libsMap.containsKey(o.getLibraryId())){
+            CxFilterPlan plan = CxFilterPlan.compile(filter);
+            Map<String, CxOsaLib> libsMap = getOsaLibsMap(libsFile);
+            /*Issues indexed by library name*/
+            Map<String, OsaIssue> issueIndex = new LinkedHashMap<>();
+
+            try (JsonParser parser = openJsonArray(vulnsFile)) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    CxOsa o = OSA_MAPPER.readValue(parser, CxOsa.class);
                     CxOsaLib lib = libsMap.get(o.getLibraryId());
-                    String filename = lib.getName();
-
-                    ScanResults.XIssue issue = ScanResults.XIssue.builder()
-                            .file(filename)
-                            .vulnerability(OSA_VULN)
-                            .severity(o.getSeverity().getName())
-                            .cve(o.getCveName())
-                            .build();
+                    if (lib == null || !plan.matchesSeverity(o.getSeverity().getName())) {
+                        continue;
+                    }
                     ScanResults.OsaDetails details = ScanResults.OsaDetails.builder()
                             .severity(o.getSeverity().getName())
                             .cve(o.getCveName())
@@ -394,25 +639,14 @@ public class CxService {
                             .url(o.getUrl())
                             .version(lib.getVersion())
                             .build();
-                    //update
-                    if(issueList.contains(issue)){
-                        issue = issueList.get(issueList.indexOf(issue));
-                        //bump up the severity if required
-                        if(severityMap.get(issue.getSeverity().toUpperCase()) < severityMap.get(o.getSeverity().getName().toUpperCase())){
-                            issue.setSeverity(o.getSeverity().getName());
-                        }
-                        issue.setCve(issue.getCve().concat(",").concat(o.getCveName()));
-                        issue.getOsaDetails().add(details);
-                    }
-                    else {//new
-                        List<ScanResults.OsaDetails> dList = new ArrayList<>();
-                        dList.add(details);
-                        issue.setOsaDetails(dList);
-                        issueList.add(issue);
-                    }
+                    issueIndex.computeIfAbsent(lib.getName(), OsaIssue::new).add(o, details);
                 }
             }
 
+            List<ScanResults.XIssue> issueList = new ArrayList<>(issueIndex.size());
+            for(OsaIssue issue: issueIndex.values()){
+                issueList.add(issue.build());
+            }
             return ScanResults.builder()
                     .osa(true)
                     .xIssues(issueList)
@@ -430,162 +664,97 @@ public class CxService {
         }
     }
 
-    private boolean filterOsa(List<Filter> filters, CxOsa osa){
-        boolean all = true;
-        for(Filter f: filters){
-            if(f.getType().equals(Filter.Type.SEVERITY)){
-                all = false;  //if no SEVERITY filters, everything is applied
-                if(f.getValue().equalsIgnoreCase(osa.getSeverity().getName())){
-                    return true;
-                }
-            }
-        }
-        return all;
-    }
-
-    private Map<String, CxOsaLib> getOsaLibsMap(List<CxOsaLib> libs){
+    /**
+     * Index the OSA libraries report by library id
+     */
+    private Map<String, CxOsaLib> getOsaLibsMap(File libsFile) throws IOException{
         Map<String, CxOsaLib> libMap = new HashMap<>();
-        for(CxOsaLib o: libs){
-            libMap.put(o.getId(), o);
+        try (JsonParser parser = openJsonArray(libsFile)) {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                CxOsaLib o = OSA_MAPPER.readValue(parser, CxOsaLib.class);
+                libMap.put(o.getId(), o);
+            }
         }
         return libMap;
     }
 
-
-    private List<CxOsa> getOSAVulnsByLibId(List<CxOsa> osaVulns, String libId){
-       List<CxOsa> vulns = new ArrayList<>();
-       for(CxOsa v: osaVulns){
-           if(v.getLibraryId().equals(libId)){
-               vulns.add(v);
-           }
-       }
-        return vulns;
+    /**
+     * Open a JSON report, positioned on the start of its top level array
+     */
+    private JsonParser openJsonArray(File file) throws IOException{
+        JsonParser parser = OSA_MAPPER.getFactory().createParser(file);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new JsonParseException(parser, "Expected a JSON array in ".concat(file.getName()));
+        }
+        return parser;
     }
 
 
     /**
+     * Map the Results of a Query to issues.  The Query and its Results have already been filtered by the parser.
      *
-     * @param filter
-     * @param session
-     * @param cxIssueList
+     * @param descriptions true if descriptions are to be looked up
+     * @param issueIndex
      * @param cxResults
+     * @param q
      */
-    private void getIssues(List<Filter> filter, String session, List<ScanResults.XIssue> cxIssueList, CxXMLResultsType cxResults) {
-        for (QueryType q : cxResults.getQuery()) {
-            if (checkFilter(q, filter)) {
-                ScanResults.XIssue.XIssueBuilder xIssueBuilder = ScanResults.XIssue.builder();
-                /*Top node of each issue*/
-                for (ResultType r : q.getResult()) {
-                    if (r.getFalsePositive().toUpperCase().equals("FALSE") && checkFilter(r, filter)) {
-                        /*Map issue details*/
-                        xIssueBuilder.cwe(q.getCweId());
-                        xIssueBuilder.language(q.getLanguage());
-                        xIssueBuilder.severity(q.getSeverity());
-                        xIssueBuilder.vulnerability(q.getName());
-                        xIssueBuilder.file(r.getFileName());
-                        xIssueBuilder.severity(r.getSeverity());
-                        xIssueBuilder.link(r.getDeepLink());
-
-                        Map<Integer, String> details = new HashMap<>();
-                        try {
-                            /* Call the CX SOAP Service to get Issue Description*/
-                            if (session != null) {
-                                try {
-                                    xIssueBuilder.description(this.getIssueDescription(session, Long.parseLong(cxResults.getScanId()), Long.parseLong(r.getPath().getPathId())));
-                                } catch (HttpStatusCodeException e){
-                                    xIssueBuilder.description("");
-                                }
-                            } else {
-                                xIssueBuilder.description("");
-                            }
-                            details.put(Integer.parseInt(r.getPath().getPathNode().get(0).getLine()),
-                                    r.getPath().getPathNode().get(0).getSnippet().getLine().getCode());
-                        } catch (NullPointerException e) {
-                            log.warn("Problem grabbing snippet.  Snippet may not exist for finding for Node ID");
-                            /*Defaulting to initial line number with no snippet*/
-                            details.put(Integer.parseInt(r.getLine()), null);
-                        }
-                        xIssueBuilder.details(details);
-                        ScanResults.XIssue issue = xIssueBuilder.build();
-                        checkForDuplicateIssue(cxIssueList, r, details, issue);
-                    }
+    private void getIssues(boolean descriptions, Map<ScanResults.XIssue, ScanResults.XIssue> issueIndex, CxXMLResultsType cxResults, QueryType q) {
+        ScanResults.XIssue.XIssueBuilder xIssueBuilder = ScanResults.XIssue.builder();
+        /*Top node of each issue*/
+        for (ResultType r : q.getResult()) {
+            if (r.getFalsePositive().toUpperCase().equals("FALSE")) {
+                /*Map issue details*/
+                xIssueBuilder.cwe(q.getCweId());
+                xIssueBuilder.language(q.getLanguage());
+                xIssueBuilder.severity(q.getSeverity());
+                xIssueBuilder.vulnerability(q.getName());
+                xIssueBuilder.file(r.getFileName());
+                xIssueBuilder.severity(r.getSeverity());
+                xIssueBuilder.link(r.getDeepLink());
+
+                xIssueBuilder.description("");
+
+                Map<Integer, String> details = new LineDetails();
+                try {
+                    details.put(Integer.parseInt(r.getPath().getPathNode().get(0).getLine()),
+                            r.getPath().getPathNode().get(0).getSnippet().getLine().getCode());
+                } catch (NullPointerException e) {
+                    log.warn("Problem grabbing snippet.  Snippet may not exist for finding for Node ID");
+                    /*Defaulting to initial line number with no snippet*/
+                    details.put(Integer.parseInt(r.getLine()), null);
+                }
+                xIssueBuilder.details(details);
+                ScanResults.XIssue issue = xIssueBuilder.build();
+                /* Call the CX SOAP Service to get Issue Description, only once the description of a new issue is read*/
+                if (checkForDuplicateIssue(issueIndex, details, issue) && descriptions && r.getPath() != null) {
+                    final Long scanId = Long.parseLong(cxResults.getScanId());
+                    final Long pathId = Long.parseLong(r.getPath().getPathId());
+                    final String queryId = q.getId();
+                    final String language = q.getLanguage();
+                    issue.setDescriptionSupplier(() ->
+                            cxDescriptionService.getDescription(scanId, pathId, queryId, language).join());
                 }
             }
         }
     }
 
-
     /**
-     * Check if the highlevel Query resultset meets the filter criteria
+     * Merge the result into an existing issue of the same vuln+filename, otherwise add it as a new issue
      *
-     * @param q
-     * @param filters
-     * @return
+     * @return true if the issue was added as a new issue
      */
-    private boolean checkFilter(QueryType q, List<Filter> filters){
-        if(filters == null || filters.isEmpty()){
+    boolean checkForDuplicateIssue(Map<ScanResults.XIssue, ScanResults.XIssue> issueIndex, Map<Integer, String> details, ScanResults.XIssue issue) {
+        /*Get existing issue of same vuln+filename*/
+        ScanResults.XIssue existingIssue = issueIndex.putIfAbsent(issue, issue);
+        if(existingIssue == null){
             return true;
         }
-        List<String> severity = new ArrayList<>();
-        List<String> cwe = new ArrayList<>();
-        List<String> category = new ArrayList<>();
-
-        for(Filter f: filters){
-            if(f.getType().equals(Filter.Type.SEVERITY)){
-                severity.add(f.getValue().toUpperCase());
-            }
-            else if(f.getType().equals(Filter.Type.TYPE)){
-                category.add(f.getValue().toUpperCase());
-            }
-            else if(f.getType().equals(Filter.Type.CWE)){
-                cwe.add(f.getValue().toUpperCase());
-            }
+        /*If no reference exists for this particular line, append it to the details (line+snippet)*/
+        for(Map.Entry<Integer, String> detail: details.entrySet()){
+            existingIssue.getDetails().putIfAbsent(detail.getKey(), detail.getValue());
         }
-        if(!severity.isEmpty() && !severity.contains(q.getSeverity().toUpperCase())){
-            return false;
-        }
-        if(!cwe.isEmpty() && !cwe.contains(q.getCweId())){
-            return false;
-        }
-
-        return category.isEmpty() || category.contains(q.getName().toUpperCase());
-    }
-
-    private boolean checkFilter(ResultType r, List<Filter> filters){
-        if(filters == null || filters.isEmpty()){
-            return true;
-        }
-        List<Integer> status = new ArrayList<>();
-
-        for(Filter f: filters){
-            if(f.getType().equals(Filter.Type.STATUS)){
-                status.add(STATUS_MAP.get(f.getValue().toUpperCase()));
-            }
-        }
-        return status.isEmpty() || status.contains(Integer.parseInt(r.getState()));
-    }
-
-    private void checkForDuplicateIssue(List<ScanResults.XIssue> cxIssueList, ResultType r, Map<Integer, String> details, ScanResults.XIssue issue) {
-        if(cxIssueList.contains(issue)){
-            /*Get existing issue of same vuln+filename*/
-            ScanResults.XIssue existingIssue = cxIssueList.get(cxIssueList.indexOf(issue));
-            /*If no reference exists for this particular line, append it to the details (line+snippet)*/
-            if(!existingIssue.getDetails().containsKey(Integer.parseInt(r.getLine()))){
-                try {
-                    existingIssue.getDetails().put(Integer.parseInt(r.getPath().getPathNode().get(0).getLine()),
-                            r.getPath().getPathNode().get(0).getSnippet().getLine().getCode());
-                }catch (NullPointerException e){
-                    details.put(Integer.parseInt(r.getLine()),null);
-                }
-            }
-        }
-        else{
-            cxIssueList.add(issue);
-        }
-    }
-
-    private String getIssueDescription(String session, Long scanId, Long pathId){
-        return cxLegacyService.getDescription(session, scanId, pathId);
+        return false;
     }
 
     /**
@@ -606,7 +775,14 @@ public class CxService {
             String response = restTemplate.postForObject(cxProperties.getUrl().concat(PROJECTS), requestEntity, String.class);
             JSONObject obj = new JSONObject(response);
             String id = obj.get("id").toString();
-            return Integer.parseInt(id);
+            Integer projectId = Integer.parseInt(id);
+            indexProject(CxProject.builder()
+                    .id(projectId)
+                    .teamId(ownerId)
+                    .name(name)
+                    .isPublic(true)
+                    .build());
+            return projectId;
         }catch (HttpStatusCodeException e){
             log.error("HTTP error code {} while creating project with name {} under owner id {}", e.getStatusCode(), name, ownerId);
             e.printStackTrace();
@@ -627,6 +803,9 @@ public class CxService {
         HttpEntity httpEntity = new HttpEntity<>(createAuthHeaders());
         try {
             ResponseEntity<CxProject[]> projects = restTemplate.exchange(cxProperties.getUrl().concat(PROJECTS), HttpMethod.GET, httpEntity, CxProject[].class);
+            if(projects.getBody() != null) {
+                projectCache.put(REFERENCE_KEY, indexProjects(projects.getBody()));
+            }
             return projects.getBody();
         }catch (HttpStatusCodeException e){
             log.warn("Error occurred while retrieving projects, http error {}", e.getStatusCode());
@@ -636,24 +815,27 @@ public class CxService {
     }
 
     /**
-     * Get All Projects in Checkmarx
+     * Get All Projects under a specific team within Checkmarx (served from the project index)
      *
      * @return
      */
     public List<CxProject> getProjects(String teamId) throws MachinaException{
+        Map<String, CxProject> teamProjects = getReferenceData(projectCache, "Projects").get(teamId);
+        if(teamProjects == null){
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(teamProjects.values());
+    }
+
+    private Map<String, Map<String, CxProject>> loadProjectIndex() throws MachinaException{
         HttpEntity httpEntity = new HttpEntity<>(createAuthHeaders());
-        List<CxProject> teamProjects = new ArrayList<>();
         try {
+            log.info("Retrieving Cx projects");
             ResponseEntity<CxProject[]> projects = restTemplate.exchange(cxProperties.getUrl().concat(PROJECTS), HttpMethod.GET, httpEntity, CxProject[].class);
-
-            if(projects.getBody() != null) {
-                for (CxProject p : projects.getBody()) {
-                    if(p.getTeamId().equals(teamId)){
-                        teamProjects.add(p);
-                    }
-                }
+            if(projects.getBody() == null){
+                throw new MachinaException("Error retrieving Projects");
             }
-            return teamProjects;
+            return indexProjects(projects.getBody());
         }catch (HttpStatusCodeException e){
             log.warn("Error occurred while retrieving projects, http error {}", e.getStatusCode());
             log.debug(ExceptionUtils.getStackTrace(e));
@@ -661,6 +843,33 @@ public class CxService {
         }
     }
 
+    private Map<String, Map<String, CxProject>> indexProjects(CxProject[] projects){
+        Map<String, Map<String, CxProject>> index = new ConcurrentHashMap<>();
+        for(CxProject p: projects){
+            if(p.getTeamId() == null || p.getName() == null){
+                continue;
+            }
+            index.computeIfAbsent(p.getTeamId(), t -> new ConcurrentHashMap<>()).put(p.getName(), p);
+        }
+        return index;
+    }
+
+    /**
+     * Add a project to the index in place, without waiting for the next refresh
+     *
+     * @param project
+     */
+    private void indexProject(CxProject project){
+        Map<String, Map<String, CxProject>> index = projectCache.getIfPresent(REFERENCE_KEY);
+        if(index != null){
+            index.computeIfAbsent(project.getTeamId(), t -> new ConcurrentHashMap<>()).put(project.getName(), project);
+        }
+        projectLookups.invalidate(projectKey(project.getTeamId(), project.getName()));
+    }
+
+    private String projectKey(String teamId, String name){
+        return teamId.concat("/").concat(name);
+    }
 
     /**
      * Get All Projects under a specific team within Checkmarx
@@ -705,7 +914,44 @@ public class CxService {
         return UNKNOWN_INT;
     }
     */
+
+    /**
+     * Get the Id of a project within a team, using the project index.
+     *
+     * Projects missing from the index (i.e. created since the last refresh) are looked up directly.  Concurrent
+     * lookups of the same project share one call, and the outcome (including a miss) is remembered for a short time.
+     *
+     * @param ownerId
+     * @param name
+     * @return
+     */
     public Integer getProjectId(String ownerId, String name){
+        try {
+            Map<String, CxProject> teamProjects = getReferenceData(projectCache, "Projects").get(ownerId);
+            if(teamProjects != null && teamProjects.containsKey(name)){
+                return teamProjects.get(name).getId();
+            }
+        }catch (MachinaException e){
+            log.warn("Project index is not available, looking up project {} directly", name);
+        }
+        try {
+            Integer projectId = projectLookups.get(projectKey(ownerId, name), () -> findProjectId(ownerId, name));
+            if(!projectId.equals(UNKNOWN_INT)){
+                Map<String, Map<String, CxProject>> index = projectCache.getIfPresent(REFERENCE_KEY);
+                if(index != null){
+                    index.computeIfAbsent(ownerId, t -> new ConcurrentHashMap<>())
+                            .putIfAbsent(name, CxProject.builder().id(projectId).teamId(ownerId).name(name).build());
+                }
+            }
+            return projectId;
+        }catch (ExecutionException | UncheckedExecutionException e){
+            log.error("Error occurred while retrieving project with name {}", name);
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+        return UNKNOWN_INT;
+    }
+
+    private Integer findProjectId(String ownerId, String name){
         HttpEntity httpEntity = new HttpEntity<>(createAuthHeaders());
         try {
             ResponseEntity<String> projects = restTemplate.exchange(cxProperties.getUrl().concat(PROJECTS)
@@ -894,6 +1140,38 @@ public class CxService {
      * @throws MachinaException
      */
     public String getTeamId(String teamPath) throws MachinaException{
+        String teamId = getReferenceData(teamCache, "Teams").get(teamPath);
+        if(teamId == null){
+            /*The team may have been created since the teams were cached*/
+            try {
+                teamId = teamLookups.get(teamPath, () -> findTeamId(teamPath));
+            }catch (ExecutionException | UncheckedExecutionException e){
+                log.error("Error occurred while retrieving team {}", teamPath);
+                log.error(ExceptionUtils.getStackTrace(e));
+                throw new MachinaException("Error obtaining Team Id");
+            }
+        }
+        if(teamId.equals(UNKNOWN)){
+            return UNKNOWN;
+        }
+        log.info("Found team {} with ID {}", teamPath, teamId);
+        return teamId;
+    }
+
+    /**
+     * Reload the teams for a team missing from the cached teams
+     *
+     * @param teamPath
+     * @return the Id of the team, UNKNOWN if it does not exist
+     * @throws MachinaException
+     */
+    private String findTeamId(String teamPath) throws MachinaException{
+        Map<String, String> teams = loadTeams();
+        teamCache.put(REFERENCE_KEY, teams);
+        return teams.getOrDefault(teamPath, UNKNOWN);
+    }
+
+    private Map<String, String> loadTeams() throws MachinaException{
         HttpEntity httpEntity = new HttpEntity<>(createAuthHeaders());
         try {
             log.info("Retrieving Cx teams");
@@ -902,17 +1180,16 @@ public class CxService {
             if(teams == null){
                 throw new MachinaException("Error obtaining Team Id");
             }
+            Map<String, String> teamMap = new HashMap<>();
             for(CxTeam team: teams){
-                if(team.getFullName().equals(teamPath)){
-                    log.info("Found team {} with ID {}", teamPath, team.getId());
-                    return team.getId();
-                }
+                teamMap.put(team.getFullName(), team.getId());
             }
+            return teamMap;
         }   catch (HttpStatusCodeException e) {
             log.error("Error occurred while retrieving Teams");
             log.error(ExceptionUtils.getStackTrace(e));
+            throw new MachinaException("Error obtaining Team Id");
         }
-        return UNKNOWN;
     }
 
     /**
@@ -928,7 +1205,9 @@ public class CxService {
         try{
             session = cxLegacyService.login(cxProperties.getUsername(), cxProperties.getPassword());
             cxLegacyService.createTeam(session, parentTeamId, teamName);
-            return getTeamId(cxProperties.getTeam().concat("\\").concat(teamName));
+            String teamPath = cxProperties.getTeam().concat("\\").concat(teamName);
+            teamLookups.invalidate(teamPath);
+            return getTeamId(teamPath);
         }
         catch (CheckmarxLegacyException e){
             log.error("Error occurring while logging into Legacy SOAP based WebService to create new team {} under parent {}", teamName, parentTeamId);
@@ -943,6 +1222,15 @@ public class CxService {
      * @throws MachinaException
      */
     public Integer getScanConfiguration(String configuration) throws MachinaException {
+        Integer engineId = getReferenceData(engineCache, "Scan configurations").get(configuration);
+        if(engineId == null){
+            return UNKNOWN_INT;
+        }
+        log.info("Found xml/engine configuration {} with ID {}", configuration, engineId);
+        return engineId;
+    }
+
+    private Map<String, Integer> loadScanConfigurations() throws MachinaException {
         HttpEntity httpEntity = new HttpEntity<>(createAuthHeaders());
 
         try {
@@ -952,21 +1240,28 @@ public class CxService {
             if(engines == null){
                 throw new MachinaException("Error obtaining Scan configurations");
             }
+            Map<String, Integer> engineMap = new HashMap<>();
             for(CxScanEngine engine: engines){
-                if(engine.getName().equals(configuration)){
-                    log.info("Found xml/engine configuration {} with ID {}", configuration, engine.getId());
-                    return engine.getId();
-                }
+                engineMap.put(engine.getName(), engine.getId());
             }
+            return engineMap;
         }   catch (HttpStatusCodeException e) {
             log.error("Error occurred while retrieving engine configurations");
             log.error(ExceptionUtils.getStackTrace(e));
-            throw new MachinaException("Error obtaining Team Id");
+            throw new MachinaException("Error obtaining Scan configurations");
         }
-        return UNKNOWN_INT;
     }
 
     public Integer getPresetId(String preset) throws MachinaException {
+        Integer presetId = getReferenceData(presetCache, "Presets").get(preset);
+        if(presetId == null){
+            return UNKNOWN_INT;
+        }
+        log.info("Found preset {} with ID {}", preset, presetId);
+        return presetId;
+    }
+
+    private Map<String, Integer> loadPresets() throws MachinaException {
         HttpEntity httpEntity = new HttpEntity<>(createAuthHeaders());
 
         try {
@@ -974,69 +1269,80 @@ public class CxService {
             ResponseEntity<CxPreset[]> response = restTemplate.exchange(cxProperties.getUrl().concat(PRESETS), HttpMethod.GET, httpEntity, CxPreset[].class);
             CxPreset[] cxPresets = response.getBody();
             if(cxPresets == null){
-                throw new MachinaException("Error obtaining Team Id");
+                throw new MachinaException("Error obtaining Presets");
             }
+            Map<String, Integer> presetMap = new HashMap<>();
             for(CxPreset cxPreset: cxPresets){
-                if(cxPreset.getName().equals(preset)){
-                    log.info("Found preset {} with ID {}", preset, cxPreset.getId());
-                    return cxPreset.getId();
-                }
+                presetMap.put(cxPreset.getName(), cxPreset.getId());
             }
+            return presetMap;
         }   catch (HttpStatusCodeException e) {
             log.error("Error occurred while retrieving presets");
             log.error(ExceptionUtils.getStackTrace(e));
+            throw new MachinaException("Error obtaining Presets");
         }
-        return UNKNOWN_INT;
+    }
+
+    private HttpHeaders createAuthHeaders(){
+        return cxTokenService.createAuthHeaders();
     }
 
     /**
-     * Get Auth Token
+     * OSA severities, in increasing order
      */
-    private void getAuthToken(){
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-
-        MultiValueMap<String, String> map = new LinkedMultiValueMap<String, String>();
-        map.add("username", cxProperties.getUsername());
-        map.add("password", cxProperties.getPassword());
-        map.add("grant_type", "password");
-        map.add("scope", "sast_rest_api");
-        map.add("client_id", "resource_owner_client");
-        map.add("client_secret", cxProperties.getClientSecret());
-
-        HttpEntity<MultiValueMap<String, String>> requestEntity = new HttpEntity<>(map, headers);
-
-        try {
-            //get the access token
-            CxAuthResponse response = restTemplate.postForObject(cxProperties.getUrl().concat(LOGIN), requestEntity,  CxAuthResponse.class);
-            if(response == null){
-                throw new InvalidCredentialsException();
+    private enum OsaSeverity {
+        LOW,
+        MEDIUM,
+        HIGH;
+
+        /**
+         * @return severity matching the name, or null if not known
+         */
+        static OsaSeverity of(String name) {
+            for (OsaSeverity s : values()) {
+                if (s.name().equalsIgnoreCase(name)) {
+                    return s;
+                }
             }
-            token = response.getAccessToken();
-            tokenExpires = LocalDateTime.now().plusSeconds(response.getExpiresIn()-500); //expire 500 seconds early
-        }
-        catch (HttpStatusCodeException e) {
-            log.error("Error occurred white obtaining Access Token.  Possibly incorrect credentials");
-            log.error(ExceptionUtils.getStackTrace(e));
-            throw new InvalidCredentialsException();
+            return null;
         }
     }
 
-    private boolean isTokenExpired(){
-        if(tokenExpires == null){
-            return true;
+    /**
+     * Vulnerabilities of a single library, merged into one issue
+     */
+    private static class OsaIssue {
+        private final String library;
+        private final List<ScanResults.OsaDetails> details = new ArrayList<>();
+        private final StringJoiner cves = new StringJoiner(",");
+        private String severity;
+        private OsaSeverity severityLevel;
+
+        private OsaIssue(String library) {
+            this.library = library;
         }
-        return !LocalDateTime.now().isAfter(tokenExpires);
-    }
 
-    private HttpHeaders createAuthHeaders(){
-        //get a new access token if the current one is expired.
-        if(token == null || isTokenExpired()){
-            getAuthToken();
+        private void add(CxOsa o, ScanResults.OsaDetails osaDetails) {
+            String name = o.getSeverity().getName();
+            OsaSeverity level = OsaSeverity.of(name);
+            /*bump up the severity if required*/
+            if (severity == null || (level != null && (severityLevel == null || level.compareTo(severityLevel) > 0))) {
+                severity = name;
+                severityLevel = level;
+            }
+            cves.add(o.getCveName());
+            details.add(osaDetails);
+        }
+
+        private ScanResults.XIssue build() {
+            ScanResults.XIssue issue = ScanResults.XIssue.builder()
+                    .file(library)
+                    .vulnerability(OSA_VULN)
+                    .severity(severity)
+                    .cve(cves.toString())
+                    .build();
+            issue.setOsaDetails(details);
+            return issue;
         }
-        return new HttpHeaders() {{
-            set("Authorization", "Bearer ".concat(token));
-            setContentType(MediaType.APPLICATION_JSON_UTF8);
-        }};
     }
 }
@@ -0,0 +1,130 @@
+package com.custodela.machina.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.function.Predicate;
+
+/**
+ * Decorates the request factory of the Cx REST client to retry a call once with a new token when Cx rejects the
+ * current one (401).
+ *
+ * Only requests that can be replayed are retried, their (small, JSON or form) body is kept in memory for that purpose.
+ * Multipart and binary bodies (i.e. source uploads) are passed on to the underlying request as they are written and
+ * are not retried.
+ */
+class CxTokenRetryRequestFactory implements ClientHttpRequestFactory {
+
+    private final ClientHttpRequestFactory delegate;
+    private final Predicate<URI> cxRequest;
+    private final CxTokenService tokenService;
+
+    /**
+     * @param delegate
+     * @param cxRequest    true for the URIs of the Cx REST API
+     * @param tokenService
+     */
+    CxTokenRetryRequestFactory(ClientHttpRequestFactory delegate, Predicate<URI> cxRequest, CxTokenService tokenService) {
+        this.delegate = delegate;
+        this.cxRequest = cxRequest;
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        if (!cxRequest.test(uri)) {
+            return delegate.createRequest(uri, httpMethod);
+        }
+        return new RetryRequest(uri, httpMethod);
+    }
+
+    private static boolean isReplayable(HttpHeaders headers) {
+        MediaType type = headers.getContentType();
+        return type == null || !(MediaType.MULTIPART_FORM_DATA.includes(type) ||
+                MediaType.APPLICATION_OCTET_STREAM.includes(type));
+    }
+
+    private class RetryRequest extends AbstractClientHttpRequest {
+        private final URI uri;
+        private final HttpMethod method;
+        private ByteArrayOutputStream buffer;
+        private ClientHttpRequest streamed;
+
+        private RetryRequest(URI uri, HttpMethod method) {
+            this.uri = uri;
+            this.method = method;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        @Override
+        public String getMethodValue() {
+            return method.name();
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        protected OutputStream getBodyInternal(HttpHeaders headers) throws IOException {
+            if (isReplayable(headers)) {
+                if (buffer == null) {
+                    buffer = new ByteArrayOutputStream(1024);
+                }
+                return buffer;
+            }
+            if (streamed == null) {
+                streamed = delegate.createRequest(uri, method);
+                streamed.getHeaders().putAll(headers);
+            }
+            return streamed.getBody();
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+            if (streamed != null) {
+                return streamed.execute();
+            }
+            byte[] body = buffer != null ? buffer.toByteArray() : new byte[0];
+            String authorization = headers.getFirst(HttpHeaders.AUTHORIZATION);
+            ClientHttpResponse response = execute(headers, body);
+            if (authorization == null || response.getRawStatusCode() != HttpStatus.UNAUTHORIZED.value()) {
+                return response;
+            }
+            String renewed = tokenService.renewAuthorization(authorization, uri);
+            if (renewed == null) {
+                return response;
+            }
+            response.close();
+            HttpHeaders retry = new HttpHeaders();
+            retry.putAll(headers);
+            retry.set(HttpHeaders.AUTHORIZATION, renewed);
+            return execute(retry, body);
+        }
+
+        private ClientHttpResponse execute(HttpHeaders headers, byte[] body) throws IOException {
+            ClientHttpRequest request = delegate.createRequest(uri, method);
+            request.getHeaders().putAll(headers);
+            if (body.length > 0) {
+                StreamUtils.copy(body, request.getBody());
+            }
+            return request.execute();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.custodela.machina.service;
+
+import com.custodela.machina.config.CxProperties;
+import com.custodela.machina.dto.cx.CxAuthResponse;
+import com.custodela.machina.exception.InvalidCredentialsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import java.beans.ConstructorProperties;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides the OAuth access token used by the Cx REST API clients.
+ *
+ * The token is refreshed ahead of its expiry by a single thread, concurrent callers wait for that refresh rather than
+ * each logging in.  Cx REST calls rejected with a 401 are retried once with a fresh token, see
+ * {@link CxTokenRetryRequestFactory}.
+ */
+@Service
+public class CxTokenService {
+
+    private static final Logger log = org.slf4j.LoggerFactory.getLogger(CxTokenService.class);
+    private static final String LOGIN = "/auth/identity/connect/token";
+    private static final String BEARER = "Bearer ";
+    private static final long EXPIRY_MARGIN = 500; //refresh 500 seconds early, or half way for short lived tokens
+    private final CxProperties cxProperties;
+    private final RestTemplate restTemplate;
+    private final Counter refreshCounter;
+    private final Counter retryCounter;
+    private final Timer refreshTimer;
+    private final Object lock = new Object();
+    /*token and expiry are published together*/
+    private volatile Token token = null;
+
+    @ConstructorProperties({"cxProperties", "restTemplate", "registry"})
+    public CxTokenService(CxProperties cxProperties, RestTemplate restTemplate, MeterRegistry registry) {
+        this.cxProperties = cxProperties;
+        this.restTemplate = restTemplate;
+        this.refreshCounter = registry.counter("machina.cx.token.refresh");
+        this.retryCounter = registry.counter("machina.cx.token.retry");
+        this.refreshTimer = registry.timer("machina.cx.token.refresh.latency");
+    }
+
+    @PostConstruct
+    public void init() {
+        restTemplate.setRequestFactory(new CxTokenRetryRequestFactory(restTemplate.getRequestFactory(),
+                uri -> cxProperties.getUrl() != null && uri.toString().startsWith(cxProperties.getUrl()), this));
+    }
+
+    /**
+     * Headers for Cx REST API calls, including the current access token
+     *
+     * @return
+     */
+    public HttpHeaders createAuthHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.AUTHORIZATION, BEARER.concat(getToken()));
+        headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+        return headers;
+    }
+
+    /**
+     * Get the current access token, logging in if it is missing or about to expire
+     *
+     * @return
+     */
+    public String getToken() {
+        Token current = token;
+        if (current != null && !current.isExpired()) {
+            return current.value;
+        }
+        synchronized (lock) {
+            /*another thread may have completed the refresh while waiting*/
+            if (token == null || token.isExpired()) {
+                getAuthToken();
+            }
+            return token.value;
+        }
+    }
+
+    /**
+     * Discard the token if it is still the current one (i.e. it was rejected by Cx)
+     *
+     * @param rejected
+     */
+    void invalidate(String rejected) {
+        synchronized (lock) {
+            if (rejected != null && token != null && rejected.equals(token.value)) {
+                token = null;
+            }
+        }
+    }
+
+    /**
+     * Replace the authorization of a Cx REST API call rejected with a 401
+     *
+     * @param authorization rejected Authorization header
+     * @param uri
+     * @return Authorization header with a new token, null if the call was not made with a token
+     */
+    String renewAuthorization(String authorization, URI uri) {
+        if (!authorization.startsWith(BEARER)) {
+            return null;
+        }
+        log.info("Cx access token rejected for {}, retrying with a new token", uri.getPath());
+        retryCounter.increment();
+        invalidate(authorization.substring(BEARER.length()));
+        return BEARER.concat(getToken());
+    }
+
+    /**
+     * Get Auth Token
+     */
+    private void getAuthToken() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+
+        MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
+        map.add("username", cxProperties.getUsername());
+        map.add("password", cxProperties.getPassword());
+        map.add("grant_type", "password");
+        map.add("scope", "sast_rest_api");
+        map.add("client_id", "resource_owner_client");
+        map.add("client_secret", cxProperties.getClientSecret());
+
+        HttpEntity<MultiValueMap<String, String>> requestEntity = new HttpEntity<>(map, headers);
+
+        long start = System.nanoTime();
+        try {
+            log.debug("Obtaining Cx access token");
+            //get the access token
+            CxAuthResponse response = restTemplate.postForObject(cxProperties.getUrl().concat(LOGIN), requestEntity, CxAuthResponse.class);
+            if (response == null) {
+                throw new InvalidCredentialsException();
+            }
+            token = new Token(response.getAccessToken(), LocalDateTime.now().plusSeconds(getRefreshAfter(response.getExpiresIn())));
+            refreshCounter.increment();
+        } catch (HttpStatusCodeException e) {
+            log.error("Error occurred white obtaining Access Token.  Possibly incorrect credentials");
+            log.error(ExceptionUtils.getStackTrace(e));
+            throw new InvalidCredentialsException();
+        } finally {
+            refreshTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @param expiresIn lifetime of the token in seconds
+     * @return seconds after which the token is refreshed, EXPIRY_MARGIN before it expires but at most half its lifetime
+     */
+    static long getRefreshAfter(long expiresIn) {
+        return expiresIn - Math.min(EXPIRY_MARGIN, expiresIn / 2);
+    }
+
+    /**
+     * Access token along with the time it is to be refreshed
+     */
+    private static class Token {
+        private final String value;
+        private final LocalDateTime expires;
+
+        private Token(String value, LocalDateTime expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+
+        private boolean isExpired() {
+            return LocalDateTime.now().isAfter(expires);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.custodela.machina.service;
+
+import com.atlassian.httpclient.api.Request;
+import com.atlassian.httpclient.api.Response;
+import com.atlassian.httpclient.api.ResponsePromise;
+import com.atlassian.jira.rest.client.internal.async.DisposableHttpClient;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Decorates the HTTP client of the Jira REST client to pass the Retry-After of throttled responses (429, 503) on to the
+ * JiraSyncExecutor.  The Jira REST client only reports the status code of a failed call, not its headers.
+ *
+ * The client and the request builders it creates are proxied, every response promise they return is observed.
+ */
+final class JiraRetryAfterClient {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVICE_UNAVAILABLE = 503;
+    private static final String RETRY_AFTER = "Retry-After";
+
+    private JiraRetryAfterClient() {
+    }
+
+    static DisposableHttpClient wrap(DisposableHttpClient client, JiraSyncExecutor syncExecutor) {
+        return proxy(DisposableHttpClient.class, client, syncExecutor);
+    }
+
+    private static <T> T proxy(Class<T> type, T target, JiraSyncExecutor syncExecutor) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new Handler(target, syncExecutor)));
+    }
+
+    private static void observe(ResponsePromise promise, JiraSyncExecutor syncExecutor) {
+        Futures.addCallback(promise, new FutureCallback<Response>() {
+            @Override
+            public void onSuccess(Response response) {
+                if (response != null && (response.getStatusCode() == TOO_MANY_REQUESTS ||
+                        response.getStatusCode() == SERVICE_UNAVAILABLE)) {
+                    syncExecutor.throttled(JiraSyncExecutor.parseRetryAfter(response.getHeader(RETRY_AFTER),
+                            System.currentTimeMillis()));
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                /*no response, reported by the Jira REST client*/
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private static class Handler implements InvocationHandler {
+        private final Object target;
+        private final JiraSyncExecutor syncExecutor;
+
+        private Handler(Object target, JiraSyncExecutor syncExecutor) {
+            this.target = target;
+            this.syncExecutor = syncExecutor;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            /*builders return themselves, keep returning the proxy*/
+            if (result == target) {
+                return proxy;
+            }
+            if (result instanceof Request.Builder) {
+                return proxy(Request.Builder.class, (Request.Builder) result, syncExecutor);
+            }
+            if (result instanceof ResponsePromise) {
+                observe((ResponsePromise) result, syncExecutor);
+            }
+            return result;
+        }
+    }
+}
@@ -4,9 +4,13 @@ import com.atlassian.jira.rest.client.api.*;
 import com.atlassian.jira.rest.client.api.domain.*;
 import com.atlassian.jira.rest.client.api.domain.input.ComplexIssueInputFieldValue;
 import com.atlassian.jira.rest.client.api.domain.input.FieldInput;
+import com.atlassian.jira.rest.client.api.domain.input.IssueInput;
 import com.atlassian.jira.rest.client.api.domain.input.IssueInputBuilder;
 import com.atlassian.jira.rest.client.api.domain.input.TransitionInput;
-import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClientFactory;
+import com.atlassian.jira.rest.client.auth.BasicHttpAuthenticationHandler;
+import com.atlassian.jira.rest.client.internal.async.AsynchronousHttpClientFactory;
+import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClient;
+import com.atlassian.jira.rest.client.internal.async.DisposableHttpClient;
 import com.atlassian.util.concurrent.Promise;
 import com.custodela.machina.config.JiraProperties;
 import com.custodela.machina.config.MachinaProperties;
@@ -16,17 +20,33 @@ import com.custodela.machina.dto.ScanResults;
 import com.custodela.machina.exception.JiraClientException;
 import com.custodela.machina.exception.MachinaRuntimeException;
 import com.custodela.machina.utils.ScanUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
 import javax.annotation.PostConstruct;
 import java.beans.ConstructorProperties;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
 
 @Service
@@ -40,32 +60,97 @@ public class JiraService {
     private URI jiraURI;
     private final JiraProperties jiraProperties;
     private final MachinaProperties machinaProperties;
-    private static final int MAX_JQL_RESULTS = 1000000;
+    private final JiraSyncExecutor syncExecutor;
+    /*Fields required by the JRJC issue parser, along with those used to reconcile issues (labels)*/
+    private static final Set<String> SEARCH_FIELDS = ImmutableSet.of("summary", "issuetype", "created", "updated", "project", "status", "labels");
+    /*scan specific parameters of a Cx deep link (ViewerMain.aspx?scanid=..&projectid=..&pathid=..)*/
+    private static final Pattern SCAN_LINK_PARAMS = Pattern.compile("(?i)([?&](?:scanid|pathid)=)[^&\\]|\\s]*");
+    /*Jira metadata, resolved once per TTL.  Issue types by project, fields by project/issue type,
+      transitions by project/issue type/status*/
+    private final Cache<String, Map<String, IssueType>> issueTypeCache;
+    private final Cache<String, FieldMetadata> fieldCache;
+    private final Cache<String, List<Transition>> transitionCache;
+    private final Cache<String, User> userCache;
 
-    @ConstructorProperties({"jiraProperties", "machinaProperties"})
-    public JiraService(JiraProperties jiraProperties, MachinaProperties machinaProperties) {
+    @ConstructorProperties({"jiraProperties", "machinaProperties", "syncExecutor", "registry"})
+    public JiraService(JiraProperties jiraProperties, MachinaProperties machinaProperties, JiraSyncExecutor syncExecutor, MeterRegistry registry) {
         this.jiraProperties = jiraProperties;
         this.machinaProperties = machinaProperties;
+        this.syncExecutor = syncExecutor;
+        this.issueTypeCache = metadataCache("jira.issueTypes", jiraProperties.getMetadataCacheTtl(), registry);
+        this.fieldCache = metadataCache("jira.fields", jiraProperties.getMetadataCacheTtl(), registry);
+        this.transitionCache = metadataCache("jira.transitions", jiraProperties.getMetadataCacheTtl(), registry);
+        this.userCache = metadataCache("jira.users", jiraProperties.getMetadataCacheTtl(), registry);
+    }
+
+    private static <V> Cache<String, V> metadataCache(String name, Integer ttl, MeterRegistry registry){
+        Cache<String, V> cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(registry, cache, name);
+        return cache;
+    }
+
+    /**
+     * Return the cached metadata for a key, loading it on a miss.  A failed load is not cached, the (Rest) exception
+     * of the load is rethrown as is.
+     */
+    private <V> V getMetadata(Cache<String, V> cache, String key, Callable<V> loader){
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e){
+            if(e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            log.error("Error occurred while retrieving JIRA metadata {}", key);
+            log.error(ExceptionUtils.getStackTrace(e));
+            throw new MachinaRuntimeException();
+        }
+    }
+
+    private static String metadataKey(String... values){
+        return String.join("|", values);
+    }
+
+    /**
+     * Discard cached issue types, fields, security levels, transitions and users, they will be retrieved on next use
+     */
+    public void invalidateMetadata(){
+        issueTypeCache.invalidateAll();
+        fieldCache.invalidateAll();
+        transitionCache.invalidateAll();
+        userCache.invalidateAll();
     }
 
     @PostConstruct
     public void init() {
-        JiraRestClientFactory factory = new AsynchronousJiraRestClientFactory();
-
         try {
             this.jiraURI = new URI(jiraProperties.getUrl());
         } catch (URISyntaxException e) {
             log.error("Error constructing URI for JIRA");
         }
-        this.client = factory.createWithBasicHttpAuthentication(jiraURI, jiraProperties.getUsername(), jiraProperties.getToken());
+        /*HTTP client decorated to pass the Retry-After of throttled responses on to the sync executor*/
+        DisposableHttpClient httpClient = new AsynchronousHttpClientFactory().createClient(jiraURI,
+                new BasicHttpAuthenticationHandler(jiraProperties.getUsername(), jiraProperties.getToken()));
+        this.client = new AsynchronousJiraRestClient(jiraURI, JiraRetryAfterClient.wrap(httpClient, syncExecutor));
         this.issueClient = this.client.getIssueClient();
         this.projectClient = this.client.getProjectClient();
         this.metaClient = this.client.getMetadataClient();
     }
 
-    private List<Issue> getIssues(ScanRequest request) {
+    /**
+     * Retrieve the issues tracked for a request, keyed by summary.
+     *
+     * Results are paged (jira.search-page-size) and only the fields needed to reconcile issues are requested.  The next
+     * page is requested before the current one is added to the map.
+     *
+     * @param request
+     * @return
+     */
+    private Map<String, Issue> getJiraIssueMap(ScanRequest request) {
         log.info("Executing getIssues API call");
-        List<Issue> issues = new ArrayList<>();
+        Map<String, Issue> jiraMap = new HashMap<>();
         String jql;
         /*Namespace/Repo/Branch provided*/
         if(!ScanUtils.empty(request.getNamespace()) && !ScanUtils.empty(request.getRepoName()) && !ScanUtils.empty(request.getBranch())) {
@@ -95,33 +180,203 @@ public class JiraService {
         else{
             throw new MachinaRuntimeException();
         }
+        /*stable order, so issues do not move between pages*/
+        jql = jql.concat(" order by key asc");
         log.debug(jql);
-        Promise<SearchResult> searchJqlPromise = this.client.getSearchClient().searchJql(jql, MAX_JQL_RESULTS, 0, null);
-        for (Issue issue : searchJqlPromise.claim().getIssues()) {
-            issues.add(issue);
-        }
-        return issues;
-    }
 
-    private Issue getIssue(String bugId) {
-        return this.issueClient.getIssue(bugId).claim();
+        Set<String> fields = new HashSet<>(SEARCH_FIELDS);
+        if(!jiraProperties.getLabelTracker().equals("labels")){
+            String trackerField = getCustomFieldByName(request.getBugTracker().getProjectKey(),
+                    request.getBugTracker().getIssueType(), jiraProperties.getLabelTracker());
+            if(trackerField != null){
+                fields.add(trackerField);
+            }
+        }
+        if(jiraProperties.isSkipUnchanged()){
+            String digestField = getDigestFieldId(request);
+            if(digestField != null){
+                fields.add(digestField);
+            }
+        }
+        int pageSize = Math.max(1, jiraProperties.getSearchPageSize());
+        SearchRestClient searchClient = this.client.getSearchClient();
+        int startAt = 0;
+        Promise<SearchResult> page = searchClient.searchJql(jql, pageSize, startAt, fields);
+        while(page != null) {
+            SearchResult result = page.claim();
+            List<Issue> issues = new ArrayList<>();
+            result.getIssues().forEach(issues::add);
+            startAt += issues.size();
+            /*request the next page before processing this one*/
+            page = !issues.isEmpty() && startAt < result.getTotal() ? searchClient.searchJql(jql, pageSize, startAt, fields) : null;
+            for (Issue issue : issues) {
+                jiraMap.put(issue.getSummary(), issue);
+            }
+            log.debug("Retrieved {} of {} issue(s)", startAt, result.getTotal());
+        }
+        return jiraMap;
     }
 
     private IssueType getIssueType(String projectKey, String type) throws RestClientException, JiraClientException {
-        Project project = this.projectClient.getProject(projectKey).claim();
-        Iterator<IssueType> issueTypes = project.getIssueTypes().iterator();
-        while(issueTypes.hasNext()){
-            IssueType it = issueTypes.next();
-            if(it.getName().equals(type)){
-                return it;
+        Map<String, IssueType> issueTypes = getMetadata(issueTypeCache, projectKey, () -> {
+            Project project = this.projectClient.getProject(projectKey).claim();
+            Map<String, IssueType> types = new HashMap<>();
+            for(IssueType it: project.getIssueTypes()){
+                types.putIfAbsent(it.getName(), it);
             }
+            return types;
+        });
+        IssueType issueType = issueTypes.get(type);
+        if(issueType != null){
+            return issueType;
         }
-        log.error("Issue type {} not found for project key {}", projectKey, issueTypes);
+        log.error("Issue type {} not found for project key {}", type, projectKey);
         throw new JiraClientException("Issue type not found");
     }
 
 
-    private String createIssue(ScanResults.XIssue issue, ScanRequest request) throws JiraClientException{
+    private CompletableFuture<String> createIssue(IssueInput issueInput){
+        log.debug("Creating JIRA issue");
+        return syncExecutor.call(() -> this.issueClient.createIssue(issueInput)).handle((basicIssue, e) -> {
+            if(e != null){
+                log.error("Error occurred while creating JIRA issue. {}", e.getMessage());
+                log.error(ExceptionUtils.getStackTrace(e));
+                throw new CompletionException(new JiraClientException());
+            }
+            log.debug("JIRA issue {} created", basicIssue.getKey());
+            return basicIssue.getKey();
+        });
+    }
+
+    /**
+     * Create issues through the bulk create endpoint, jira.bulk-create-size issues per call.  Issues that fail within a
+     * bulk call are created one at a time.  If a bulk call fails entirely it is only retried one issue at a time when
+     * Jira rejected it (4xx), otherwise the issues it may have created are looked up first so they are not duplicated.
+     *
+     * @param issues
+     * @param inputs create input of each issue
+     * @param request
+     * @return key of each created issue, in the order of the issues.  Each completes (or fails) on its own.
+     */
+    private List<CompletableFuture<String>> createIssues(List<ScanResults.XIssue> issues, List<IssueInput> inputs, ScanRequest request){
+        List<CompletableFuture<String>> keys = new ArrayList<>();
+        int batchSize = Math.max(1, jiraProperties.getBulkCreateSize());
+        for(int start = 0; start < issues.size(); start += batchSize){
+            int end = Math.min(issues.size(), start + batchSize);
+            keys.addAll(createBatch(issues.subList(start, end), inputs.subList(start, end), request));
+        }
+        return keys;
+    }
+
+    private List<CompletableFuture<String>> createBatch(List<ScanResults.XIssue> batch, List<IssueInput> inputs, ScanRequest request){
+        if(inputs.size() == 1){
+            return Collections.singletonList(createIssue(inputs.get(0)));
+        }
+        log.debug("Creating {} JIRA issues", inputs.size());
+        CompletableFuture<List<CompletableFuture<String>>> bulk = syncExecutor.call(() -> this.issueClient.createIssues(inputs)).handle((result, e) -> {
+            List<CompletableFuture<String>> keys = new ArrayList<>();
+            if(e != null){
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if(isRejected(cause)){
+                    log.warn("Bulk creation of {} JIRA issues rejected, creating them one at a time. {}", inputs.size(), cause.getMessage());
+                    for(IssueInput input: inputs){
+                        keys.add(createIssue(input));
+                    }
+                    return keys;
+                }
+                log.warn("Bulk creation of {} JIRA issues failed, looking up the issues it created. {}", inputs.size(), cause.getMessage());
+                CompletableFuture<Map<String, String>> existing = findIssues(inputs, request);
+                for(IssueInput input: inputs){
+                    keys.add(existing.thenCompose(found -> {
+                        String key = found.get(getSummary(input));
+                        if(key != null){
+                            log.debug("JIRA issue {} was created by the failed bulk call", key);
+                            return CompletableFuture.completedFuture(key);
+                        }
+                        return createIssue(input);
+                    }));
+                }
+                return keys;
+            }
+            Map<Integer, BulkOperationErrorResult> errors = new HashMap<>();
+            if(result.getErrors() != null) {
+                for (BulkOperationErrorResult error : result.getErrors()) {
+                    errors.put(error.getFailedElementNumber(), error);
+                }
+            }
+            /*created issues are returned in the order of the elements that did not fail*/
+            Iterator<BasicIssue> created = result.getIssues() != null ? result.getIssues().iterator() : Collections.emptyIterator();
+            for(int i = 0; i < inputs.size(); i++){
+                BulkOperationErrorResult error = errors.get(i);
+                if(error == null && created.hasNext()){
+                    String key = created.next().getKey();
+                    log.debug("JIRA issue {} created", key);
+                    keys.add(CompletableFuture.completedFuture(key));
+                }
+                else{
+                    ScanResults.XIssue issue = batch.get(i);
+                    log.warn("Bulk creation of JIRA issue for {} in {} failed, creating it individually. {}",
+                            issue.getVulnerability(), issue.getFilename(), error != null ? error.getElementErrors() : "");
+                    keys.add(createIssue(inputs.get(i)));
+                }
+            }
+            return keys;
+        });
+        List<CompletableFuture<String>> keys = new ArrayList<>();
+        for(int i = 0; i < inputs.size(); i++){
+            final int element = i;
+            keys.add(bulk.thenCompose(elements -> elements.get(element)));
+        }
+        return keys;
+    }
+
+    /**
+     * @param e failure of a bulk create call
+     * @return true if Jira rejected the call (4xx), i.e. none of its issues were created
+     */
+    private static boolean isRejected(Throwable e){
+        if(!(e instanceof RestClientException) || !((RestClientException) e).getStatusCode().isPresent()){
+            return false;
+        }
+        int status = ((RestClientException) e).getStatusCode().get();
+        return status >= 400 && status < 500;
+    }
+
+    /**
+     * Look up issues with the summaries of the given inputs, i.e. issues created by a bulk call that failed after
+     * (part of) it was applied
+     *
+     * @param inputs
+     * @param request
+     * @return key of each existing issue, by summary
+     */
+    private CompletableFuture<Map<String, String>> findIssues(List<IssueInput> inputs, ScanRequest request){
+        List<String> summaries = new ArrayList<>();
+        for(IssueInput input: inputs){
+            summaries.add(String.format("summary ~ \"\\\"%s\\\"\"", getSummary(input).replace("\\", "\\\\").replace("\"", "\\\"")));
+        }
+        String jql = String.format("project = %s and issueType = \"%s\" and (%s)",
+                request.getBugTracker().getProjectKey(),
+                request.getBugTracker().getIssueType(),
+                String.join(" or ", summaries));
+        log.debug(jql);
+        SearchRestClient searchClient = this.client.getSearchClient();
+        /*text search on summary may match similar summaries as well*/
+        int maxResults = Math.max(inputs.size() * 2, jiraProperties.getSearchPageSize());
+        return syncExecutor.call(() -> searchClient.searchJql(jql, maxResults, 0, ImmutableSet.of("summary"))).thenApply(result -> {
+            Map<String, String> keys = new HashMap<>();
+            for(Issue issue: result.getIssues()){
+                keys.putIfAbsent(issue.getSummary(), issue.getKey());
+            }
+            return keys;
+        });
+    }
+
+    private static String getSummary(IssueInput input){
+        return String.valueOf(input.getField("summary").getValue());
+    }
+
+    private IssueInput getIssueInput(ScanResults.XIssue issue, ScanRequest request) throws JiraClientException{
         log.debug("Retrieving issuetype object for project {}, type {}", request.getBugTracker().getProjectKey(), request.getBugTracker().getIssueType());
         try{
             IssueType issueType = this.getIssueType(request.getBugTracker().getProjectKey(), request.getBugTracker().getIssueType());
@@ -176,7 +431,8 @@ public class JiraService {
                 labels.add(jiraProperties.getAppLabelPrefix().concat(":").concat(request.getApplication()));
             }
             log.debug("Adding tracker labels: {} - {}", jiraProperties.getLabelTracker(), labels);
-            if(!jiraProperties.getLabelTracker().equals("labels")){
+            boolean trackerLabels = jiraProperties.getLabelTracker().equals("labels");
+            if(!trackerLabels){
                 String customField = getCustomFieldByName(request.getBugTracker().getProjectKey(),
                         request.getBugTracker().getIssueType(), jiraProperties.getLabelTracker());
                 issueBuilder.setFieldValue(customField, labels);
@@ -185,27 +441,31 @@ public class JiraService {
                 issueBuilder.setFieldValue("labels", labels);
             }
 
-            log.debug("Creating JIRA issue");
-
             mapCustomFields(request, issue, issueBuilder);
 
-            log.debug("Creating JIRA issue");
+            if(jiraProperties.isSkipUnchanged()){
+                /*digest of the content an update would write, so the next scan can skip the issue if unchanged*/
+                String digest = getDigest(getUpdateInput(issue, request).build());
+                setDigest(issueBuilder, trackerLabels ? labels : Collections.emptyList(), digest, getDigestFieldId(request));
+            }
+
             log.debug(issueBuilder.toString());
-            BasicIssue basicIssue = this.issueClient.createIssue(issueBuilder.build()).claim();
-            log.debug("JIRA issue {} created", basicIssue.getKey());
-            return basicIssue.getKey();
+            return issueBuilder.build();
         }catch (RestClientException e){
-            log.error("Error occurred while creating JIRA issue. {}", e.getMessage());
+            log.error("Error occurred while preparing JIRA issue. {}", e.getMessage());
             log.error(ExceptionUtils.getStackTrace(e));
             throw new JiraClientException();
         }
     }
 
-    private Issue updateIssue(String bugId, ScanResults.XIssue issue, ScanRequest request) throws JiraClientException{
-        Issue jiraIssue = this.getIssue(bugId);
-        if(request.getBugTracker().getClosedStatus().contains(jiraIssue.getStatus().getName())){
-            this.transitionIssue(bugId, request.getBugTracker().getOpenTransition());
-        }
+    /**
+     * Content of an issue that is updated on each scan (description, priority, mapped fields)
+     *
+     * @param issue
+     * @param request
+     * @return
+     */
+    private IssueInputBuilder getUpdateInput(ScanResults.XIssue issue, ScanRequest request){
         IssueInputBuilder issueBuilder = new IssueInputBuilder();
         String fileUrl = ScanUtils.getFileUrl(request,issue.getFilename());
         issueBuilder.setDescription(this.getBody(issue, request, fileUrl));
@@ -215,19 +475,107 @@ public class JiraService {
                     request.getBugTracker().getPriorities().get(issue.getSeverity())));
         }
 
-        log.info("Updating issue #{}", bugId);
-
         mapCustomFields(request, issue, issueBuilder);
 
-        log.debug("Updating JIRA issue");
         log.debug(issueBuilder.toString());
-        try{
-            this.issueClient.updateIssue(bugId, issueBuilder.build()).claim();
-        }catch (RestClientException e){
-            throw new JiraClientException();
+        return issueBuilder;
+    }
+
+    /**
+     * Digest (SHA-256, hex) of the fields of an issue input, independent of the order the fields were set in.
+     *
+     * The Cx deep link of a result (description, recommendation and issue-link fields) identifies the scan and path of
+     * the result, these parameters are left out so the digest is the same from one scan to the next for the same
+     * finding.
+     *
+     * @param issueInput
+     * @return
+     */
+    static String getDigest(IssueInput issueInput){
+        Hasher hasher = Hashing.sha256().newHasher();
+        for(FieldInput field: new TreeMap<>(issueInput.getFields()).values()){
+            String value = SCAN_LINK_PARAMS.matcher(String.valueOf(field.getValue())).replaceAll("$1");
+            hasher.putString(field.getId(), StandardCharsets.UTF_8).putInt(value.length()).putString(value, StandardCharsets.UTF_8);
         }
+        return hasher.hash().toString();
+    }
 
-        return this.getIssue(bugId);
+    /**
+     * @param request
+     * @return id of the custom field the content digest is stored in (jira.digest-field), null if stored in a label
+     */
+    private String getDigestFieldId(ScanRequest request){
+        if(ScanUtils.empty(jiraProperties.getDigestField())){
+            return null;
+        }
+        return getCustomFieldByName(request.getBugTracker().getProjectKey(), request.getBugTracker().getIssueType(),
+                jiraProperties.getDigestField());
+    }
+
+    /**
+     * @param issue as retrieved by the tracked issue search
+     * @param digestFieldId
+     * @return content digest stored on the issue, or null
+     */
+    private String getStoredDigest(Issue issue, String digestFieldId){
+        if(digestFieldId != null){
+            IssueField field = issue.getField(digestFieldId);
+            return field == null || field.getValue() == null ? null : field.getValue().toString();
+        }
+        String prefix = jiraProperties.getDigestLabelPrefix().concat(":");
+        if(issue.getLabels() != null) {
+            for (String label : issue.getLabels()) {
+                if (label.startsWith(prefix)) {
+                    return label.substring(prefix.length());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Store the content digest in the digest field, or as a label replacing any previous digest label
+     *
+     * @param issueBuilder
+     * @param labels labels the issue (will) have
+     * @param digest
+     * @param digestFieldId
+     */
+    private void setDigest(IssueInputBuilder issueBuilder, Collection<String> labels, String digest, String digestFieldId){
+        if(digestFieldId != null){
+            issueBuilder.setFieldValue(digestFieldId, digest);
+            return;
+        }
+        String prefix = jiraProperties.getDigestLabelPrefix().concat(":");
+        List<String> digestLabels = new ArrayList<>();
+        if(labels != null) {
+            for (String label : labels) {
+                if (!label.startsWith(prefix)) {
+                    digestLabels.add(label);
+                }
+            }
+        }
+        digestLabels.add(prefix.concat(digest));
+        issueBuilder.setFieldValue("labels", digestLabels);
+    }
+
+    /**
+     * Update an issue, re-opening it first if it is closed
+     *
+     * @param jiraIssue as retrieved by the tracked issue search
+     * @param issueInput
+     * @param request
+     * @return key of the updated issue
+     */
+    private CompletableFuture<String> updateIssue(Issue jiraIssue, IssueInput issueInput, ScanRequest request){
+        String bugId = jiraIssue.getKey();
+        log.info("Updating issue #{}", bugId);
+        CompletableFuture<Void> reopen = CompletableFuture.completedFuture(null);
+        if(request.getBugTracker().getClosedStatus().contains(jiraIssue.getStatus().getName())){
+            reopen = this.transitionIssue(jiraIssue, request.getBugTracker().getOpenTransition());
+        }
+        return reopen.thenCompose(v -> syncExecutor.call(() -> this.issueClient.updateIssue(bugId, issueInput)))
+                .thenApply(v -> bugId);
     }
 
     /**
@@ -416,89 +764,127 @@ public class JiraService {
     }
 
     private SecurityLevel getSecurityLevel(String projectKey, String issueType, String name){
-        GetCreateIssueMetadataOptions options;
-        options = new GetCreateIssueMetadataOptionsBuilder().withExpandedIssueTypesFields().withIssueTypeNames(issueType).withProjectKeys(projectKey).build();
-        Iterable<CimProject> metadata = this.issueClient.getCreateIssueMetadata(options).claim();
-
-        CimProject project = metadata.iterator().next();
+        return getFieldMetadata(projectKey, issueType).securityLevels.get(name);
+    }
 
-        CimProject cim = metadata.iterator().next();
+    /**
+     * Create metadata (fields and security levels) of an issue type within a project
+     *
+     * @param projectKey
+     * @param issueType
+     * @return
+     */
+    private FieldMetadata getFieldMetadata(String projectKey, String issueType){
+        return getMetadata(fieldCache, metadataKey(projectKey, issueType), () -> {
+            log.debug("Retrieving create metadata for project {}, issue type {}", projectKey, issueType);
+            GetCreateIssueMetadataOptions options;
+            options = new GetCreateIssueMetadataOptionsBuilder()
+                    .withExpandedIssueTypesFields()
+                    .withIssueTypeNames(issueType)
+                    .withProjectKeys(projectKey)
+                    .build();
+            Iterable<CimProject> metadata = this.issueClient.getCreateIssueMetadata(options).claim();
+            CimProject cim = metadata.iterator().next();
+            return new FieldMetadata(cim.getIssueTypes().iterator().next().getFields());
+        });
+    }
 
-        Map<String,CimFieldInfo> fields = cim.getIssueTypes().iterator().next().getFields();
-        CimFieldInfo security = fields.get("security");
-        if (security != null) {
-            Iterable<Object> allowedValues = security.getAllowedValues();
-            if(allowedValues != null) {
-                for (Object lvl : allowedValues) {
-                    SecurityLevel secLevel = (SecurityLevel) lvl;
-                    if (secLevel.getName().equals(name)) {
-                        return secLevel;
-                    }
-                }
-            }
-        }
-        return null;
+    /**
+     * Transitions available from the current status of an issue, shared by the issues of the same project, issue type
+     * and status.  Workflow conditions may still make a transition unavailable for a particular issue (or available
+     * only to some), see {@link #transitionUncached}.
+     *
+     * @param issue
+     * @return
+     */
+    private List<Transition> getTransitions(Issue issue){
+        String key = metadataKey(issue.getProject().getKey(), issue.getIssueType().getName(), issue.getStatus().getName());
+        return getMetadata(transitionCache, key,
+                () -> ImmutableList.copyOf(this.issueClient.getTransitions(issue.getTransitionsUri()).claim()));
     }
 
     /**
-     * Tranistions an issue based on the issue id and transition name
+     * Tranistions an issue based on the issue and transition name
      *
      * TODO handle re-open transition fields
      *
-     * @param bugId
+     * @param issue as retrieved by the tracked issue search
      * @param transitionName
      * @return
      */
-    private Issue transitionIssue(String bugId, String transitionName) throws JiraClientException {
-        Issue issue;
-        try {
-            issue = this.issueClient.getIssue(bugId).claim();
+    private CompletableFuture<Void> transitionIssue(Issue issue, String transitionName) {
+        return transition(issue, transitionName, transition -> new TransitionInput(transition.getId()));
+    }
 
-            URI transitionURI = issue.getTransitionsUri();
-            final Iterable<Transition> transitions = this.issueClient.getTransitions(transitionURI).claim();
-            final Transition transition = getTransitionByName(transitions, transitionName);
-            if (transition != null) {
-                this.issueClient.transition(issue.getTransitionsUri(), new TransitionInput(transition.getId())).claim();
-            } else {
-                log.warn("Issue cannot be transitioned to {}.  Transition is not applicable to issue {}.  Available transitions: {}",
-                transitionName, bugId, transitions.toString());
+    private CompletableFuture<Void> transitionCloseIssue(Issue issue, String transitionName, BugTracker bt) {
+        return transition(issue, transitionName, transition -> {
+            //No input for transition
+            if(ScanUtils.empty(bt.getCloseTransitionField()) &&
+                    ScanUtils.empty(bt.getCloseTransitionValue())){
+                return new TransitionInput(transition.getId());
+            }//Input required for transition
+            else{
+                return new TransitionInput(transition.getId(),
+                        Collections.singletonList(new FieldInput(bt.getCloseTransitionField(), ComplexIssueInputFieldValue.with("name", bt.getCloseTransitionValue()))));
             }
-        } catch(RestClientException e) {
-            log.error(ExceptionUtils.getStackTrace(e));
-            log.error("There was a problem transitioning issue {}. ", bugId, e);
-            throw new JiraClientException();
-        }
-        return issue;
+        });
     }
 
-    private Issue transitionCloseIssue(String bugId, String transitionName, BugTracker bt) throws JiraClientException{
-        Issue issue;
+    private CompletableFuture<Void> transition(Issue issue, String transitionName, Function<Transition, TransitionInput> input) {
+        CompletableFuture<Void> result;
         try {
-            issue = this.issueClient.getIssue(bugId).claim();
-
-            URI transitionURI = issue.getTransitionsUri();
-            final Iterable<Transition> transitions = this.issueClient.getTransitions(transitionURI).claim();
-            final Transition transition = getTransitionByName(transitions, transitionName);
+            final Transition transition = getTransitionByName(getTransitions(issue), transitionName);
             if (transition != null) {
-                //No input for transition
-                if(ScanUtils.empty(bt.getCloseTransitionField()) &&
-                        ScanUtils.empty(bt.getCloseTransitionValue())){
-                    this.issueClient.transition(issue.getTransitionsUri(), new TransitionInput(transition.getId())).claim();
-                }//Input required for transition
-                else{
-                    this.issueClient.transition(issue.getTransitionsUri(), new TransitionInput(transition.getId(),
-                            Collections.singletonList(new FieldInput(bt.getCloseTransitionField(), ComplexIssueInputFieldValue.with("name", bt.getCloseTransitionValue()))))).claim();
-                }
+                /*workflow conditions are evaluated per issue, Jira may reject a transition shared by the issues in the
+                  same status for this one*/
+                TransitionInput transitionInput = input.apply(transition);
+                result = syncExecutor.call(() -> this.issueClient.transition(issue.getTransitionsUri(), transitionInput))
+                        .handle((v, e) -> {
+                            if(e == null){
+                                return CompletableFuture.<Void>completedFuture(null);
+                            }
+                            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                            if(isRejected(cause)){
+                                log.debug("Transition {} rejected for issue {}, retrieving its transitions", transitionName, issue.getKey());
+                                return transitionUncached(issue, transitionName, input);
+                            }
+                            CompletableFuture<Void> failed = new CompletableFuture<>();
+                            failed.completeExceptionally(cause);
+                            return failed;
+                        })
+                        .thenCompose(Function.identity());
             } else {
-                log.warn("Issue cannot't be transitioned to {}.  Transition is not applicable to issue {}.  Available transitions: {}",
-                transitionName, bugId, transitions.toString());
+                result = transitionUncached(issue, transitionName, input);
             }
         } catch(RestClientException e) {
-            log.error(ExceptionUtils.getStackTrace(e));
-            log.error("There was a problem transitioning issue {}. ", bugId, e);
-            throw new JiraClientException("");
+            result = new CompletableFuture<>();
+            result.completeExceptionally(e);
         }
-        return issue;
+        return result.handle((v, e) -> {
+            if(e != null) {
+                log.error(ExceptionUtils.getStackTrace(e));
+                log.error("There was a problem transitioning issue {}. ", issue.getKey(), e);
+                throw new CompletionException(new JiraClientException());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Transition an issue using the transitions retrieved for the issue itself, bypassing the transitions shared by the
+     * issues in the same status
+     */
+    private CompletableFuture<Void> transitionUncached(Issue issue, String transitionName, Function<Transition, TransitionInput> input) {
+        return syncExecutor.call(() -> this.issueClient.getTransitions(issue.getTransitionsUri())).thenCompose(transitions -> {
+            Transition transition = getTransitionByName(transitions, transitionName);
+            if (transition == null) {
+                log.warn("Issue cannot be transitioned to {}.  Transition is not applicable to issue {}.  Available transitions: {}",
+                        transitionName, issue.getKey(), ImmutableList.copyOf(transitions));
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            TransitionInput transitionInput = input.apply(transition);
+            return syncExecutor.call(() -> this.issueClient.transition(issue.getTransitionsUri(), transitionInput));
+        });
     }
 
     /**
@@ -507,22 +893,22 @@ public class JiraService {
      * @return
      */
     private User getAssignee(String assignee) {
-         return client.getUserClient().getUser(assignee).claim();
+         return getMetadata(userCache, assignee, () -> client.getUserClient().getUser(assignee).claim());
     }
 
 
     /**
+     * Comment on an issue, a failure is logged only
      *
-     * @param bugId
+     * @param issue as retrieved by the tracked issue search
      * @param comment
      */
-    private void addCommentToBug(String bugId, String comment){
-        try{
-            Issue issue = this.issueClient.getIssue(bugId).claim();
-            this.issueClient.addComment(issue.getCommentsUri(), Comment.valueOf(comment)).claim();
-        }catch(RestClientException e){
-            log.error(ExceptionUtils.getStackTrace(e));
-        }
+    private CompletableFuture<Void> addCommentToBug(Issue issue, String comment){
+        return syncExecutor.call(() -> this.issueClient.addComment(issue.getCommentsUri(), Comment.valueOf(comment)))
+                .exceptionally(e -> {
+                    log.error(ExceptionUtils.getStackTrace(e));
+                    return null;
+                });
     }
 
 
@@ -551,20 +937,7 @@ public class JiraService {
      */
     private String getCustomFieldByName(String project, String issueType, String fieldName) {
         log.debug("Getting custom field {}", fieldName);
-        GetCreateIssueMetadataOptions options;
-        options = new GetCreateIssueMetadataOptionsBuilder()
-            .withExpandedIssueTypesFields()
-            .withIssueTypeNames(issueType)
-            .withProjectKeys(project)
-            .build();
-        Iterable<CimProject> metadata = this.issueClient.getCreateIssueMetadata(options).claim();
-        CimProject cim = metadata.iterator().next();
-        for (CimFieldInfo info : cim.getIssueTypes().iterator().next().getFields().values()) {
-            if(info.getName() != null && info.getName().equals(fieldName)){
-                return info.getId();
-            }
-        }
-        return null;
+        return getFieldMetadata(project, issueType).fieldIds.get(fieldName);
     }
 
     public void getCustomFields(){
@@ -573,15 +946,6 @@ public class JiraService {
         }
     }
 
-    private Map<String, Issue> getJiraIssueMap(List<Issue> issues){
-        Map<String, Issue> jiraMap = new HashMap<>();
-        for(Issue issue : issues){
-                jiraMap.put(issue.getSummary(),issue);
-        }
-        return jiraMap;
-    }
-
-
     private Map<String, ScanResults.XIssue> getIssueMap(List<ScanResults.XIssue> issues, ScanRequest request){
         String issuePrefix = jiraProperties.getIssuePrefix();
         if(issuePrefix == null){
@@ -721,18 +1085,32 @@ public class JiraService {
     }
 
 
+    /**
+     * Publish results to Jira: create new issues, update (and comment on) existing ones and close those that are no
+     * longer found.  The Jira calls are issued concurrently through the JiraSyncExecutor.
+     *
+     * @param results
+     * @param request
+     * @return keys of the new, updated and closed issues
+     * @throws JiraClientException if any issue could not be created, updated or closed
+     */
     Map<String, List<String>> process(ScanResults results, ScanRequest request) throws JiraClientException{
         Map<String, ScanResults.XIssue> map;
         Map<String, Issue> jiraMap;
-        List<String> newIssues = new ArrayList<>();
-        List<String> updatedIssues = new ArrayList<>();
-        List<String> closedIssues = new ArrayList<>();
+        List<String> newIssues = Collections.synchronizedList(new ArrayList<>());
+        List<String> updatedIssues = Collections.synchronizedList(new ArrayList<>());
+        List<String> closedIssues = Collections.synchronizedList(new ArrayList<>());
+        List<ScanResults.XIssue> pendingIssues = new ArrayList<>();
+        /*updates are prepared first and only started once every input could be built*/
+        List<Runnable> updates = new ArrayList<>();
+        List<CompletableFuture<?>> operations = new ArrayList<>();
 
         log.info("Processing Results and publishing findings to Jira");
 
-        List<Issue> issues = this.getIssues(request);
         map = this.getIssueMap(results.getXIssues(), request);
-        jiraMap = this.getJiraIssueMap(issues);
+        jiraMap = this.getJiraIssueMap(request);
+        String digestFieldId = jiraProperties.isSkipUnchanged() ? getDigestFieldId(request) : null;
+        int unchanged = 0;
 
         for (Map.Entry<String, ScanResults.XIssue> xIssue : map.entrySet()){
             try {
@@ -744,23 +1122,37 @@ public class JiraService {
 
                     /*Ignore any with label indicating false positive*/
                     if (!i.getLabels().contains(jiraProperties.getFalsePositiveLabel())) {  //TODO handle FALSE_POSITIVE status
-                        log.debug("Issue still exists.  Updating issue with key {}", xIssue.getKey());
-                        Issue updatedIssue = this.updateIssue(i.getKey(), currentIssue, request);
-                        if (updatedIssue != null) {
-                            log.debug("Update completed for issue #{}", updatedIssue.getKey());
-                            updatedIssues.add(updatedIssue.getKey());
-                            addCommentToBug(i.getKey(), "Issue still remains");
+                        IssueInputBuilder update = this.getUpdateInput(currentIssue, request);
+                        if (jiraProperties.isSkipUnchanged()) {
+                            String digest = getDigest(update.build());
+                            boolean closed = request.getBugTracker().getClosedStatus().contains(i.getStatus().getName());
+                            if (!closed && digest.equals(getStoredDigest(i, digestFieldId))) {
+                                log.debug("Issue still exists and is unchanged, skipping issue with key {}", xIssue.getKey());
+                                unchanged++;
+                                continue;
+                            }
+                            setDigest(update, i.getLabels(), digest, digestFieldId);
                         }
+                        log.debug("Issue still exists.  Updating issue with key {}", xIssue.getKey());
+                        IssueInput updateInput = update.build();
+                        updates.add(() -> operations.add(this.updateIssue(i, updateInput, request)
+                                .thenCompose(key -> addCommentToBug(i, "Issue still remains").thenApply(v -> key))
+                                .whenComplete((key, e) -> {
+                                    if (e != null) {
+                                        log.error("Error occurred while processing issue with key {}", xIssue.getKey(), e);
+                                    } else {
+                                        log.debug("Update completed for issue #{}", key);
+                                        updatedIssues.add(key);
+                                    }
+                                })));
                     } else {
                         log.info("Skipping issue marked as false-positive or has False Positive state with key {}", xIssue.getKey());
                     }
                 }
                 else {
-                    /*Create the new issue*/
+                    /*Create the new issue (in bulk, below)*/
                     log.debug("Creating new issue with key {}", xIssue.getKey());
-                    String newIssue =  this.createIssue(currentIssue, request);
-                    newIssues.add(newIssue);
-                    log.info("New issue created. #{}", newIssue);
+                    pendingIssues.add(currentIssue);
                 }
             }catch(RestClientException e){
                 log.error("Error occurred while processing issue with key {}",xIssue.getKey(), e);
@@ -768,27 +1160,79 @@ public class JiraService {
             }
         }
 
+        List<IssueInput> createInputs = new ArrayList<>();
+        for (ScanResults.XIssue issue : pendingIssues) {
+            createInputs.add(this.getIssueInput(issue, request));
+        }
+
+        updates.forEach(Runnable::run);
+        List<CompletableFuture<String>> created = this.createIssues(pendingIssues, createInputs, request);
+        for (int n = 0; n < created.size(); n++) {
+            ScanResults.XIssue issue = pendingIssues.get(n);
+            operations.add(created.get(n).whenComplete((newIssue, e) -> {
+                if (e != null) {
+                    log.error("Error occurred while creating issue for {} in {}", issue.getVulnerability(), issue.getFilename(), e);
+                } else {
+                    newIssues.add(newIssue);
+                    log.info("New issue created. #{}", newIssue);
+                }
+            }));
+        }
+
         /*Check if an issue exists in Jira but not within results and close if not*/
         for (Map.Entry<String, Issue> jiraIssue : jiraMap.entrySet()){
-            try {
-                if (!map.containsKey(jiraIssue.getKey())) {
-                    if (request.getBugTracker().getOpenStatus().contains(jiraIssue.getValue().getStatus().getName())) {
-                        /*Close the issue*/
-                        log.info("Closing issue #{} with key {}", jiraIssue.getKey(), jiraIssue.getKey());
-                        this.transitionCloseIssue(jiraIssue.getValue().getKey(),
-                                request.getBugTracker().getCloseTransition(), request.getBugTracker());
-                        closedIssues.add(jiraIssue.getValue().getKey());
-                    }
+            if (!map.containsKey(jiraIssue.getKey())) {
+                if (request.getBugTracker().getOpenStatus().contains(jiraIssue.getValue().getStatus().getName())) {
+                    /*Close the issue*/
+                    log.info("Closing issue #{} with key {}", jiraIssue.getValue().getKey(), jiraIssue.getKey());
+                    operations.add(this.transitionCloseIssue(jiraIssue.getValue(),
+                            request.getBugTracker().getCloseTransition(), request.getBugTracker())
+                            .whenComplete((v, e) -> {
+                                if (e != null) {
+                                    log.error("Error occurred while processing issue with key {}", jiraIssue.getKey(), e);
+                                } else {
+                                    closedIssues.add(jiraIssue.getValue().getKey());
+                                }
+                            }));
                 }
-            }catch(HttpClientErrorException e){
-                log.error("Error occurred while processing issue with key {} {}", jiraIssue.getKey(), e);
             }
         }
 
+        try {
+            CompletableFuture.allOf(operations.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            log.error("Jira sync completed with errors: {} new, {} updated, {} closed", newIssues.size(), updatedIssues.size(), closedIssues.size());
+            throw new JiraClientException();
+        }
+        log.info("Jira sync completed: {} new, {} updated, {} unchanged, {} closed", newIssues.size(), updatedIssues.size(), unchanged, closedIssues.size());
+
         return ImmutableMap.of(
-                "new", newIssues,
-                "updated", updatedIssues,
-                "closed", closedIssues
+                "new", new ArrayList<>(newIssues),
+                "updated", new ArrayList<>(updatedIssues),
+                "closed", new ArrayList<>(closedIssues)
         );
     }
+
+    /**
+     * Field name to id and security levels resolved from the create metadata of an issue type
+     */
+    private static class FieldMetadata {
+        private final Map<String, String> fieldIds = new HashMap<>();
+        private final Map<String, SecurityLevel> securityLevels = new HashMap<>();
+
+        private FieldMetadata(Map<String, CimFieldInfo> fields) {
+            for (CimFieldInfo info : fields.values()) {
+                if (info.getName() != null) {
+                    fieldIds.putIfAbsent(info.getName(), info.getId());
+                }
+            }
+            CimFieldInfo security = fields.get("security");
+            if (security != null && security.getAllowedValues() != null) {
+                for (Object lvl : security.getAllowedValues()) {
+                    SecurityLevel secLevel = (SecurityLevel) lvl;
+                    securityLevels.putIfAbsent(secLevel.getName(), secLevel);
+                }
+            }
+        }
+    }
 }
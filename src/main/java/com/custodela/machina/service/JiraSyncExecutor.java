@@ -0,0 +1,180 @@
+package com.custodela.machina.service;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.atlassian.util.concurrent.Promise;
+import com.custodela.machina.config.JiraProperties;
+import com.custodela.machina.utils.ScanUtils;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.beans.ConstructorProperties;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Issues Jira calls for the sync of results (JiraService.process) without blocking on them.
+ *
+ * At most jira.sync-parallelism calls are in flight and calls are started at no more than jira.rate-limit per second.
+ * Throttled calls (429, 503) are retried up to jira.max-retries times, after the delay requested by Jira (Retry-After,
+ * recorded by {@link JiraRetryAfterClient}) or else an exponential backoff.  The outcome of a call is delivered on the jiraSync pool, so work chained on it does
+ * not run on the Jira client threads.
+ */
+@Component
+public class JiraSyncExecutor {
+
+    private static final Logger log = org.slf4j.LoggerFactory.getLogger(JiraSyncExecutor.class);
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVICE_UNAVAILABLE = 503;
+    private static final long MAX_BACKOFF = 60000;
+    private static final long MAX_RETRY_AFTER = 600000;
+    private final ThreadPoolTaskScheduler scheduler;
+    /*time (ms) until which Jira asked to hold off (Retry-After)*/
+    private final AtomicLong throttledUntil = new AtomicLong();
+    private final Semaphore inFlight;
+    private final RateLimiter rateLimiter;
+    private final int maxRetries;
+    private final long retryBackoff;
+
+    @ConstructorProperties({"jiraProperties", "scheduler"})
+    public JiraSyncExecutor(JiraProperties jiraProperties, @Qualifier("jiraSync") ThreadPoolTaskScheduler scheduler) {
+        this.scheduler = scheduler;
+        this.inFlight = new Semaphore(Math.max(1, jiraProperties.getSyncParallelism()));
+        /*no limit unless a positive rate is configured*/
+        this.rateLimiter = jiraProperties.getRateLimit() != null && jiraProperties.getRateLimit() > 0 ?
+                RateLimiter.create(jiraProperties.getRateLimit()) : null;
+        this.maxRetries = Math.max(0, jiraProperties.getMaxRetries());
+        this.retryBackoff = Math.max(1, jiraProperties.getRetryBackoff());
+    }
+
+    /**
+     * Start a Jira call once it is allowed to (in flight and rate limits).  Blocks the caller until then.
+     *
+     * @param call returns the promise of the Jira client, invoked again for each retry
+     * @return outcome of the call
+     */
+    public <T> CompletableFuture<T> call(Supplier<Promise<T>> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        attempt(call, future, 0);
+        return future;
+    }
+
+    private <T> void attempt(Supplier<Promise<T>> call, CompletableFuture<T> future, int attempt) {
+        Promise<T> promise;
+        try {
+            if (rateLimiter != null) {
+                rateLimiter.acquire();
+            }
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return;
+        }
+        try {
+            promise = call.get();
+        } catch (RuntimeException e) {
+            inFlight.release();
+            future.completeExceptionally(e);
+            return;
+        }
+        /*the permit is released on the client thread, callers blocked in attempt may be holding every pool thread*/
+        Futures.addCallback(promise, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                inFlight.release();
+                scheduler.execute(() -> future.complete(result));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                inFlight.release();
+                if (attempt < maxRetries && isThrottled(t)) {
+                    long delay = getDelay(attempt);
+                    log.warn("Jira request throttled ({}), retrying in {} ms", t.getMessage(), delay);
+                    scheduler.schedule(() -> attempt(call, future, attempt + 1), new Date(System.currentTimeMillis() + delay));
+                } else {
+                    scheduler.execute(() -> future.completeExceptionally(t));
+                }
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private static boolean isThrottled(Throwable t) {
+        if (!(t instanceof RestClientException) || !((RestClientException) t).getStatusCode().isPresent()) {
+            return false;
+        }
+        int status = ((RestClientException) t).getStatusCode().get();
+        return status == TOO_MANY_REQUESTS || status == SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * Record the Retry-After of a throttled (429, 503) Jira response, see {@link JiraRetryAfterClient}
+     *
+     * @param retryAfter delay (ms) requested by Jira, null if none
+     */
+    void throttled(Long retryAfter) {
+        if (retryAfter == null) {
+            return;
+        }
+        long until = System.currentTimeMillis() + Math.min(MAX_RETRY_AFTER, retryAfter);
+        throttledUntil.accumulateAndGet(until, Math::max);
+    }
+
+    /**
+     * Delay before retrying a throttled call
+     *
+     * @param attempt
+     * @return the remaining Retry-After requested by Jira if any, else an exponential backoff
+     */
+    long getDelay(int attempt) {
+        long retryAfter = throttledUntil.get() - System.currentTimeMillis();
+        if (retryAfter <= 0) {
+            return getBackoff(attempt);
+        }
+        /*jitter so throttled calls do not all retry at once*/
+        return retryAfter + ThreadLocalRandom.current().nextLong(retryBackoff + 1);
+    }
+
+    /**
+     * @param retryAfter Retry-After header, either a number of seconds or an HTTP date
+     * @param now current time (ms)
+     * @return delay in ms, null if the header is missing or invalid
+     */
+    static Long parseRetryAfter(String retryAfter, long now) {
+        if (ScanUtils.empty(retryAfter)) {
+            return null;
+        }
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            /*not a number of seconds, HTTP date*/
+        }
+        try {
+            long at = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, at - now);
+        } catch (DateTimeParseException e) {
+            log.debug("Invalid Retry-After header {}", retryAfter);
+            return null;
+        }
+    }
+
+    /*exponential, with up to 50% jitter so throttled calls do not all retry at once*/
+    private long getBackoff(int attempt) {
+        long delay = Math.min(MAX_BACKOFF, retryBackoff << Math.min(attempt, 16));
+        return delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+}
@@ -15,9 +15,16 @@ import javax.annotation.Nullable;
 import java.beans.ConstructorProperties;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import static com.custodela.machina.service.CxService.UNKNOWN;
 import static com.custodela.machina.service.CxService.UNKNOWN_INT;
 import static java.lang.System.exit;
@@ -34,14 +41,15 @@ public class MachinaService {
     private final CxProperties cxProperties;
     private final MachinaProperties machinaProperties;
     private final ResutlsService resutlsService;
-    private static final Long SLEEP = 20000L;
+    private final CxScanWatcher scanWatcher;
 
-    @ConstructorProperties({"cxService", "resultService", "gitService", "gitLabService", "bbService", "emailService", "cxProperties", "machinaProperties"})
-    public MachinaService(CxService cxService, ResutlsService resutlsService, GitHubService gitService,
+    @ConstructorProperties({"cxService", "resultService", "scanWatcher", "gitService", "gitLabService", "bbService", "emailService", "cxProperties", "machinaProperties"})
+    public MachinaService(CxService cxService, ResutlsService resutlsService, CxScanWatcher scanWatcher, GitHubService gitService,
                           GitLabService gitLabService, BitBucketService bbService, EmailService emailService,
                           CxProperties cxProperties, MachinaProperties machinaProperties) {
         this.cxService = cxService;
         this.resutlsService = resutlsService;
+        this.scanWatcher = scanWatcher;
         this.gitService = gitService;
         this.gitLabService = gitLabService;
         this.bbService = bbService;
@@ -60,98 +68,107 @@ public class MachinaService {
                         .concat(request.getRepoUrl()));
                 emailCtx.put("heading","Scan Request Submitted");
                 emailService.sendmail(request.getEmail(), "Checkmarx Scan Submitted for ".concat(request.getNamespace()).concat("/").concat(request.getRepoName()), emailCtx, "message.html");
-                executeCxScanFlow(request, null);
+                /*the webHook thread is released once the scan is submitted, completion is handled by the scan watcher*/
+                executeCxScanFlow(request, null).exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    sendErrorEmail(request, cause);
+                    return null;
+                });
             } else {
                 log.warn("Unknown Product type of {}, exiting", request.getProduct());
             }
         } catch (MachinaException e){
-            log.error("Machina Exception has occurred.  {}", ExceptionUtils.getStackTrace(e));
-            emailCtx.put("message", "Error occurred during scan/bug tracking process for "
-                    .concat(request.getNamespace()).concat("/").concat(request.getRepoName()).concat(" - ")
-                    .concat(request.getRepoUrl()).concat("  Error: ").concat(e.getMessage()));
-            emailCtx.put("heading","Error occurred during scan");
-            emailService.sendmail(request.getEmail(), "Error occurred for ".concat(request.getNamespace()).concat("/").concat(request.getRepoName()), emailCtx, "message-error.html");
+            sendErrorEmail(request, e);
         }
     }
 
-    private void executeCxScanFlow(ScanRequest request, File cxFile) throws MachinaException {
-        try {
-            String ownerId = cxService.getTeamId(cxProperties.getTeam());
-            Integer presetId = cxService.getPresetId(request.getScanPreset());
-            Integer engineId = cxService.getScanConfiguration(cxProperties.getConfiguration());
-            String projectName;
-            Integer projectId;
-            if(cxProperties.isMultiTenant()){
-                String fullTeamName = cxProperties.getTeam().concat("\\").concat(request.getNamespace());
-
-                String tmpId = cxService.getTeamId(fullTeamName);
-                if(tmpId.equals(UNKNOWN)){
-                    ownerId = cxService.createTeam(ownerId, request.getNamespace());
-                }
-                else{
-                    ownerId = tmpId;
-                }
-                projectName = request.getRepoName().concat("-").concat(request.getBranch());
-            }
-            else {
-                projectName = request.getNamespace().concat("-").concat(request.getRepoName()).concat("-").concat(request.getBranch());
-            }
-            projectId = cxService.getProjectId(ownerId, projectName);
-            if (projectId.equals(UNKNOWN_INT)) {
-                projectId = cxService.createProject(ownerId, projectName);
-            }
-            if(cxService.scanExists(projectId)){
-                throw new MachinaException("Active Scan already exists for Project");
-            }
-            cxService.createScanSetting(projectId, presetId, engineId);
-            //If a file is provided, it will be uploaded as source
-            if(cxFile != null){
-                cxService.uploadProjectSource(projectId, cxFile);
-            }
-            else {
-                cxService.setProjectRepositoryDetails(projectId, request.getRepoUrlWithAuth(), request.getRefs());
-            }
-            cxService.setProjectExcludeDetails(projectId, request.getExcludeFolders(), request.getExcludeFiles());
-            Integer scanId = cxService.createScan(projectId, request.isIncremental(), false, false, "Automated scan");
+    private void sendErrorEmail(ScanRequest request, Throwable e){
+        Map<String, Object>  emailCtx = new HashMap<>();
+        log.error("Machina Exception has occurred.  {}", ExceptionUtils.getStackTrace(e));
+        emailCtx.put("message", "Error occurred during scan/bug tracking process for "
+                .concat(request.getNamespace()).concat("/").concat(request.getRepoName()).concat(" - ")
+                .concat(request.getRepoUrl()).concat("  Error: ").concat(String.valueOf(e.getMessage())));
+        emailCtx.put("heading","Error occurred during scan");
+        emailService.sendmail(request.getEmail(), "Error occurred for ".concat(request.getNamespace()).concat("/").concat(request.getRepoName()), emailCtx, "message-error.html");
+    }
 
-            String SCAN_MESSAGE = "Scan submitted to Checkmarx";
-            if(request.getBugTracker().getType().equals(BugTracker.Type.GITLABMERGE)){
-                gitLabService.sendMergeComment(request, SCAN_MESSAGE);
-            }
-            else if(request.getBugTracker().getType().equals(BugTracker.Type.GITLABCOMMIT)){
-                gitLabService.sendCommitComment(request, SCAN_MESSAGE);
-            }
-            else if(request.getBugTracker().getType().equals(BugTracker.Type.GITHUBPULL)){
-                gitService.sendMergeComment(request, SCAN_MESSAGE);
-            }
-            else if(request.getBugTracker().getType().equals(BugTracker.Type.BITBUCKETPULL)){
-                bbService.sendMergeComment(request, SCAN_MESSAGE);
-            }
+    /**
+     * Submit the scan, the returned future completes once the scan has finished and its results have been processed
+     *
+     * @param request
+     * @param cxFile source zip to upload, otherwise the repository details of the request are used
+     * @return
+     * @throws MachinaException
+     */
+    private CompletableFuture<ScanResults> executeCxScanFlow(ScanRequest request, File cxFile) throws MachinaException {
+        String ownerId = cxService.getTeamId(cxProperties.getTeam());
+        Integer presetId = cxService.getPresetId(request.getScanPreset());
+        Integer engineId = cxService.getScanConfiguration(cxProperties.getConfiguration());
+        String projectName;
+        Integer projectId;
+        if(cxProperties.isMultiTenant()){
+            String fullTeamName = cxProperties.getTeam().concat("\\").concat(request.getNamespace());
 
-            Integer status = cxService.getScanStatus(scanId);
-            if(request.getBugTracker().getType().equals(BugTracker.Type.NONE)){
-                log.info("Not waiting for scan completion as Bug Tracker type is NONE");
-                return;
+            String tmpId = cxService.getTeamId(fullTeamName);
+            if(tmpId.equals(UNKNOWN)){
+                ownerId = cxService.createTeam(ownerId, request.getNamespace());
             }
-            long timer = 0;
-            while (!status.equals(CxService.SCAN_STATUS_FINISHED) && !status.equals(CxService.SCAN_STATUS_CANCELED) &&
-                    !status.equals(CxService.SCAN_STATUS_FAILED)) {
-                Thread.sleep(SLEEP);
-                status = cxService.getScanStatus(scanId);
-                timer += SLEEP;
-                if(timer >= (cxProperties.getScanTimeout()*60000)){
-                    log.error("Scan timeout exceeded.  {} minutes", cxProperties.getScanTimeout());
-                    throw new MachinaException("Timeout exceeded during scan");
-                }
+            else{
+                ownerId = tmpId;
             }
-            if(status.equals(CxService.SCAN_STATUS_FAILED)){
-                throw new MachinaException("Scan failed");
-            }
-             resutlsService.processScanResultsAsync(request, scanId, request.getFilters());
-        }catch (InterruptedException e) {
-            log.error(ExceptionUtils.getStackTrace(e));
-            throw new MachinaException("Interrupted Exception Occurred");
+            projectName = request.getRepoName().concat("-").concat(request.getBranch());
+        }
+        else {
+            projectName = request.getNamespace().concat("-").concat(request.getRepoName()).concat("-").concat(request.getBranch());
+        }
+        projectId = cxService.getProjectId(ownerId, projectName);
+        if (projectId.equals(UNKNOWN_INT)) {
+            projectId = cxService.createProject(ownerId, projectName);
+        }
+        if(cxService.scanExists(projectId)){
+            throw new MachinaException("Active Scan already exists for Project");
+        }
+        cxService.createScanSetting(projectId, presetId, engineId);
+        //If a file is provided, it will be uploaded as source
+        if(cxFile != null){
+            cxService.uploadProjectSource(projectId, cxFile);
+        }
+        else {
+            cxService.setProjectRepositoryDetails(projectId, request.getRepoUrlWithAuth(), request.getRefs());
         }
+        cxService.setProjectExcludeDetails(projectId, request.getExcludeFolders(), request.getExcludeFiles());
+        Integer scanId = cxService.createScan(projectId, request.isIncremental(), false, false, "Automated scan");
+        if(scanId.equals(UNKNOWN_INT)){
+            throw new MachinaException("Error occurred while creating Scan");
+        }
+
+        String SCAN_MESSAGE = "Scan submitted to Checkmarx";
+        if(request.getBugTracker().getType().equals(BugTracker.Type.GITLABMERGE)){
+            gitLabService.sendMergeComment(request, SCAN_MESSAGE);
+        }
+        else if(request.getBugTracker().getType().equals(BugTracker.Type.GITLABCOMMIT)){
+            gitLabService.sendCommitComment(request, SCAN_MESSAGE);
+        }
+        else if(request.getBugTracker().getType().equals(BugTracker.Type.GITHUBPULL)){
+            gitService.sendMergeComment(request, SCAN_MESSAGE);
+        }
+        else if(request.getBugTracker().getType().equals(BugTracker.Type.BITBUCKETPULL)){
+            bbService.sendMergeComment(request, SCAN_MESSAGE);
+        }
+
+        if(request.getBugTracker().getType().equals(BugTracker.Type.NONE)){
+            log.info("Not waiting for scan completion as Bug Tracker type is NONE");
+            return CompletableFuture.completedFuture(null);
+        }
+        return scanWatcher.watch(scanId).thenCompose(status -> {
+            try {
+                return resutlsService.processScanResultsAsync(request, scanId, request.getFilters());
+            } catch (MachinaException e) {
+                CompletableFuture<ScanResults> x = new CompletableFuture<>();
+                x.completeExceptionally(e);
+                return x;
+            }
+        });
     }
 
     public void cxFullScan(ScanRequest request, String path){
@@ -160,8 +177,10 @@ public class MachinaService {
             String cxZipFile = FileSystems.getDefault().getPath("cx.".concat(UUID.randomUUID().toString()).concat(".zip")).toAbsolutePath().toString();
             ScanUtils.zipDirectory(path, cxZipFile);
             File f = new File(cxZipFile);
-            executeCxScanFlow(request, f);
-            log.info("Processing results with JIRA issue tracking");
+            executeCxScanFlow(request, f).join();
+        } catch (CompletionException e) {
+            log.error(ExceptionUtils.getStackTrace(e));
+            exit(3);
         } catch (IOException e) {
             log.error(ExceptionUtils.getStackTrace(e));
             log.error("Error occurred while attempting to zip path {}", path);
@@ -221,16 +240,7 @@ public class MachinaService {
                 project = cxProject;
             }
             Integer scanId = cxService.getLastScanId(project.getId());
-            if(scanId.equals(UNKNOWN_INT)){
-                log.info("No Scan Results to process for project {}", project.getName());
-                CompletableFuture<ScanResults> x = new CompletableFuture<>();
-                x.complete(null);
-                return x;
-            }
-            else {
-                getCxFields(project, request);
-                return resutlsService.processScanResultsAsync(request, scanId, request.getFilters());
-            }
+            return cxGetResults(request, project, scanId, null);
         } catch (MachinaException e) {
             log.debug(ExceptionUtils.getStackTrace(e));
             log.error("Error occurred while processing results for {}{}", request.getTeam(), request.getProject());
@@ -240,6 +250,25 @@ public class MachinaService {
         }
     }
 
+    /**
+     * Process the results of a given scan of the project
+     *
+     * @param request
+     * @param project
+     * @param scanId latest scan of the project
+     * @param digest of the results last processed for the project, the results are not delivered again if unchanged
+     * @return
+     * @throws MachinaException
+     */
+    private CompletableFuture<ScanResults> cxGetResults(ScanRequest request, CxProject project, Integer scanId, String digest) throws MachinaException {
+        if(scanId.equals(UNKNOWN_INT)){
+            log.info("No Scan Results to process for project {}", project.getName());
+            return CompletableFuture.completedFuture(null);
+        }
+        getCxFields(project, request);
+        return resutlsService.processScanResultsAsync(request, scanId, request.getFilters(), digest);
+    }
+
     private void getCxFields(CxProject project, ScanRequest request) {
         if(project == null) { return; }
 
@@ -275,9 +304,67 @@ public class MachinaService {
      * @param originalRequest
      */
     public void cxBatch(ScanRequest originalRequest) {
-        try {
+        cxBatch(originalRequest, false);
+    }
+
+    /**
+     * Process Projects in batch mode - JIRA ONLY
+     *
+     * @param originalRequest
+     * @param resume skip projects whose latest scan is recorded in the checkpoint of a previous run
+     */
+    public void cxBatch(ScanRequest originalRequest, boolean resume) {
+        cxBatch(originalRequest, resume, machinaProperties.isBatchSkipUnchanged());
+    }
+
+    /**
+     * Process Projects in batch mode - JIRA ONLY
+     *
+     * At most machina.batch-parallelism projects are processed at a time.  Each processed project is recorded in a
+     * checkpoint file (per team), so an interrupted batch can be resumed without processing the same scans again.
+     * A project that fails is logged and skipped, it is not recorded and is retried when the batch is resumed.
+     *
+     * The last scan processed for each project is also kept in a ledger (per team) from one batch run to the next.
+     * With skipUnchanged, projects whose latest scan is the one in the ledger are skipped before any report is
+     * generated, and the results of a new scan are not delivered again when they are identical (same digest) to the
+     * results last processed.
+     *
+     * @param originalRequest
+     * @param resume skip projects whose latest scan is recorded in the checkpoint of a previous run
+     * @param skipUnchanged skip projects whose latest scan or results were processed by a previous batch run
+     */
+    public void cxBatch(ScanRequest originalRequest, boolean resume, boolean skipUnchanged) {
+        cxBatch(originalRequest, resume, skipUnchanged, BatchShard.NONE);
+    }
+
+    /**
+     * Process the Projects of one shard in batch mode - JIRA ONLY
+     *
+     * Each shard has its own checkpoint, ledger, results and summary (batch-&lt;team&gt;-shard-&lt;index&gt;-of-&lt;count&gt;),
+     * so shards can run on separate workers.  The summaries of the shards are aggregated with cxBatchMerge.
+     *
+     * The ledger is shared by the shards of a team: the ledgers of the other shards (and of unsharded runs) found in
+     * machina.batch-store-dir are read too, so changing the shard count keeps the ledger.  A checkpoint only resumes a
+     * run with the same shard count.
+     *
+     * @param originalRequest
+     * @param resume skip projects whose latest scan is recorded in the checkpoint of a previous run
+     * @param skipUnchanged skip projects whose latest scan or results were processed by a previous batch run
+     * @param shard projects to process
+     */
+    public void cxBatch(ScanRequest originalRequest, boolean resume, boolean skipUnchanged, BatchShard shard) {
+        Path storeFile = Paths.get(machinaProperties.getBatchStoreDir(), "batch-".concat(String.valueOf(System.currentTimeMillis())).concat(shard.getSuffix()).concat(".jsonl"));
+        String teamName = getBatchTeamName(originalRequest);
+        String batchName = "batch-".concat(teamName).concat(shard.getSuffix());
+        Path checkpointFile = Paths.get(machinaProperties.getBatchStoreDir(), batchName.concat(".checkpoint"));
+        Path ledgerFile = Paths.get(machinaProperties.getBatchStoreDir(), batchName.concat(".ledger"));
+        Path summaryFile = Paths.get(machinaProperties.getBatchStoreDir(), batchName.concat(".summary.json"));
+        int parallelism = Math.max(1, machinaProperties.getBatchParallelism());
+        Semaphore permits = new Semaphore(parallelism);
+        try (BatchResultStore store = new BatchResultStore(storeFile);
+             BatchCheckpoint checkpoint = new BatchCheckpoint(checkpointFile, resume);
+             BatchLedger ledger = new BatchLedger(ledgerFile, getLedgerFiles(teamName))) {
             List<CxProject> projects;
-            List<CompletableFuture<ScanResults>> processes = new ArrayList<>();
             //Get all projects
             if(ScanUtils.empty(originalRequest.getTeam())){
                 projects = Arrays.asList(cxService.getProjects());
@@ -290,20 +377,244 @@ public class MachinaService {
                 String teamId = cxService.getTeamId(team);
                 projects = cxService.getProjects(teamId);
             }
+            if(shard.getCount() > 1){
+                int total = projects.size();
+                List<CxProject> shardProjects = new ArrayList<>();
+                for(CxProject project: projects){
+                    if(shard.contains(project.getId())){
+                        shardProjects.add(project);
+                    }
+                }
+                projects = shardProjects;
+                log.info("Processing {}, {} of {} project(s)", shard, projects.size(), total);
+            }
+            BatchProgress progress = new BatchProgress(projects.size(), TimeUnit.SECONDS.toMillis(machinaProperties.getBatchProgressInterval()));
+            log.info("Processing {} project(s), {} at a time.  Checkpoint: {}", projects.size(), parallelism, checkpointFile);
             for(CxProject project: projects){
                 ScanRequest request = new ScanRequest(originalRequest);
                 request.setProject(project.getName());
                 request.setApplication(project.getName());
-                processes.add(cxGetResults(request, project));
+                CompletableFuture<ScanResults> process;
+                Integer scanId = null;
+                permits.acquire();
+                try {
+                    scanId = cxService.getLastScanId(project.getId());
+                    if(checkpoint.isCompleted(project.getId(), scanId)){
+                        log.debug("Skipping project {}, scan Id {} was already processed", project.getName(), scanId);
+                        permits.release();
+                        progress.skipped();
+                        continue;
+                    }
+                    if(skipUnchanged && ledger.isUnchanged(project.getId(), scanId)){
+                        log.debug("Skipping project {}, scan Id {} is unchanged since the last batch", project.getName(), scanId);
+                        permits.release();
+                        progress.skipped();
+                        continue;
+                    }
+                    process = cxGetResults(request, project, scanId, skipUnchanged ? ledger.getDigest(project.getId()) : null);
+                } catch (MachinaException | RuntimeException e) {
+                    process = new CompletableFuture<>();
+                    process.completeExceptionally(e);
+                }
+                final Integer processedScanId = scanId;
+                process.whenComplete((results, e) -> {
+                    try {
+                        if (e != null) {
+                            log.error("Error occurred while processing results for project {}", project.getName());
+                            log.error(ExceptionUtils.getStackTrace(e));
+                            progress.failed();
+                        } else {
+                            /*results are spilled to the store once delivered, only the summary is kept*/
+                            spill(store, project.getName(), results);
+                            recordCheckpoint(checkpoint, project, processedScanId);
+                            recordLedger(ledger, project, processedScanId, results);
+                            progress.completed();
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                });
             }
             log.info("Waiting for processing to complete");
-            processes.forEach(CompletableFuture::join);
+            permits.acquire(parallelism);
+
+            BatchSummary batchSummary = new BatchSummary(teamName, shard);
+            progress.summarize(batchSummary);
+            batchSummary.getResults().add(storeFile.toString());
+            for(BatchResultStore.Summary summary: store.getSummaries()){
+                batchSummary.add(summary);
+            }
+            batchSummary.write(summaryFile);
+            log.info("Batch completed: {}, {} issue(s).  Summary: {}", progress, batchSummary.getIssues(), summaryFile);
 
         } catch (MachinaException e) {
             log.error(ExceptionUtils.getStackTrace(e));
             log.error("Error occurred while processing projects in batch mode");
             exit(3);
+        } catch (IOException e) {
+            log.error(ExceptionUtils.getStackTrace(e));
+            log.error("Error occurred with batch result store {}, checkpoint {}, ledger {} or summary {}", storeFile, checkpointFile, ledgerFile, summaryFile);
+            exit(3);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Batch processing interrupted, resume from checkpoint {}", checkpointFile);
+            exit(3);
+        }
+    }
+
+    /**
+     * Aggregate the summaries written by the shards of a batch (batch-&lt;team&gt;-shard-*.summary.json)
+     *
+     * @param request
+     * @return aggregated summary, also written to batch-&lt;team&gt;.summary.json
+     * @throws MachinaException
+     */
+    public BatchSummary cxBatchMerge(ScanRequest request) throws MachinaException {
+        String batchName = "batch-".concat(getBatchTeamName(request));
+        Path dir = Paths.get(machinaProperties.getBatchStoreDir());
+        Path summaryFile = dir.resolve(batchName.concat(".summary.json"));
+        List<BatchSummary> summaries = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, batchName.concat("-shard-*.summary.json"))) {
+            for(Path file: files){
+                summaries.add(BatchSummary.read(file));
+            }
+            if(summaries.isEmpty()){
+                throw new MachinaException("No shard summary found for ".concat(batchName).concat(" in ").concat(dir.toString()));
+            }
+            summaries.sort(Comparator.comparing(BatchSummary::getShardCount).thenComparing(BatchSummary::getShardIndex));
+            BatchSummary merged = BatchSummary.merge(summaries);
+            Set<Integer> shards = new HashSet<>();
+            for(BatchSummary summary: summaries){
+                if(!summary.getShardCount().equals(merged.getShardCount())){
+                    throw new MachinaException("Shard summaries of ".concat(batchName).concat(" have different shard counts"));
+                }
+                shards.add(summary.getShardIndex());
+            }
+            if(shards.size() < merged.getShardCount()){
+                log.warn("Only {} of {} shard summaries found for {}", shards.size(), merged.getShardCount(), batchName);
+            }
+            merged.write(summaryFile);
+            log.info("Merged batch summary: {}.  Summary: {}", merged, summaryFile);
+            return merged;
+        } catch (IOException e) {
+            log.error(ExceptionUtils.getStackTrace(e));
+            throw new MachinaException("Error occurred merging batch summaries of ".concat(batchName));
         }
     }
 
+    /**
+     * @param teamName
+     * @return ledger files of the team, unsharded (batch-&lt;team&gt;.ledger) and of any shard
+     */
+    private List<Path> getLedgerFiles(String teamName) throws IOException {
+        String batchName = "batch-".concat(teamName);
+        List<Path> ledgers = new ArrayList<>();
+        Path dir = Paths.get(machinaProperties.getBatchStoreDir());
+        if(!Files.isDirectory(dir)){
+            return ledgers;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, batchName.concat("{,-shard-*-of-*}.ledger"))) {
+            for(Path file: files){
+                ledgers.add(file);
+            }
+        }
+        return ledgers;
+    }
+
+    private String getBatchTeamName(ScanRequest request){
+        return ScanUtils.empty(request.getTeam()) ? "all" : request.getTeam().replaceAll("[^A-Za-z0-9_-]+", "_");
+    }
+
+    private void recordCheckpoint(BatchCheckpoint checkpoint, CxProject project, Integer scanId){
+        if(scanId == null || scanId.equals(UNKNOWN_INT)){
+            return;
+        }
+        try {
+            checkpoint.record(project.getId(), scanId);
+        } catch (IOException e) {
+            log.error("Error occurred recording project {} in checkpoint {}", project.getName(), checkpoint.getFile());
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    private void recordLedger(BatchLedger ledger, CxProject project, Integer scanId, ScanResults results){
+        if(scanId == null || scanId.equals(UNKNOWN_INT)){
+            return;
+        }
+        try {
+            ledger.record(project.getId(), scanId, ScanUtils.getDigest(results));
+        } catch (IOException e) {
+            log.error("Error occurred recording project {} in ledger", project.getName());
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    private void spill(BatchResultStore store, String project, ScanResults results){
+        try {
+            BatchResultStore.Summary summary = store.add(project, results);
+            log.debug("Stored results {}", summary);
+        } catch (IOException e) {
+            /*the results were already delivered, the batch carries on*/
+            log.error("Error occurred storing results of project {}", project);
+            log.error(ExceptionUtils.getStackTrace(e));
+        }
+    }
+
+    /**
+     * Progress of a batch run, logged at most once per interval along with an estimate of the remaining time
+     */
+    private static class BatchProgress {
+        private final int total;
+        private final long interval;
+        private final long start = System.currentTimeMillis();
+        private int completed = 0;
+        private int failed = 0;
+        private int skipped = 0;
+        private long lastLog = start;
+
+        private BatchProgress(int total, long interval) {
+            this.total = total;
+            this.interval = interval;
+        }
+
+        private synchronized void completed() {
+            completed++;
+            logProgress();
+        }
+
+        private synchronized void failed() {
+            failed++;
+            logProgress();
+        }
+
+        private synchronized void skipped() {
+            skipped++;
+            logProgress();
+        }
+
+        private synchronized void summarize(BatchSummary summary) {
+            summary.setProjects(total);
+            summary.setCompleted(completed);
+            summary.setFailed(failed);
+            summary.setSkipped(skipped);
+        }
+
+        private void logProgress() {
+            long now = System.currentTimeMillis();
+            if (now - lastLog < interval) {
+                return;
+            }
+            lastLog = now;
+            int processed = completed + failed;
+            int remaining = total - processed - skipped;
+            long eta = processed == 0 ? 0 : (now - start) / processed * remaining;
+            log.info("Batch progress: {}, ETA {} minute(s)", this, TimeUnit.MILLISECONDS.toMinutes(eta));
+        }
+
+        @Override
+        public synchronized String toString() {
+            return (completed + failed + skipped) + "/" + total + " project(s) (" + completed + " completed, " +
+                    failed + " failed, " + skipped + " skipped)";
+        }
+    }
 }
@@ -16,6 +16,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import static com.custodela.machina.service.CxService.UNKNOWN;
 import static com.custodela.machina.service.CxService.UNKNOWN_INT;
 
@@ -30,8 +31,10 @@ public class ResutlsService {
     private final EmailService emailService;
     private final CxProperties cxProperties;
     private final MachinaProperties machinaProperties;
-    private static final Long SLEEP = 20000L;
-    private static final Long TIMEOUT = 300000L;
+    private static final long MIN_SLEEP = 500L;
+    private static final long MAX_SLEEP = 20000L;
+    private static final long TIMEOUT = 300000L;
+    private static final long LOC_PER_SECOND = 100000L;
 
     @ConstructorProperties({"cxService", "jiraService", "gitService", "gitLabService", "bbService","emailService", "cxProperties", "machinaProperties"})
     public ResutlsService(CxService cxService, JiraService jiraService, GitHubService gitService,
@@ -49,9 +52,33 @@ public class ResutlsService {
 
     @Async("scanRequest")
     public CompletableFuture<ScanResults> processScanResultsAsync(ScanRequest request, Integer scanId, List<Filter> filters) throws MachinaException {
+        return processScanResults(request, scanId, filters, null);
+    }
+
+    /**
+     * Process the results of a scan, unless they are identical to results already delivered
+     *
+     * @param request
+     * @param scanId
+     * @param filters
+     * @param digest of the results last delivered for the project (see ScanUtils.getDigest), null to always deliver
+     * @return
+     * @throws MachinaException
+     */
+    @Async("scanRequest")
+    public CompletableFuture<ScanResults> processScanResultsAsync(ScanRequest request, Integer scanId, List<Filter> filters, String digest) throws MachinaException {
+        return processScanResults(request, scanId, filters, digest);
+    }
+
+    private CompletableFuture<ScanResults> processScanResults(ScanRequest request, Integer scanId, List<Filter> filters, String digest) throws MachinaException {
 
         CompletableFuture<ScanResults> future = new CompletableFuture<>();
         ScanResults results = getScanResults(scanId, filters);
+        if(digest != null && digest.equals(ScanUtils.getDigest(results))){
+            log.info("Results of scan Id {} are unchanged since they were last processed, skipping", scanId);
+            future.complete(results);
+            return future;
+        }
         Map<String, Object>  emailCtx = new HashMap<>();
         //Send email (if EMAIL was enabled and EMAL was not main feedback option
         if(machinaProperties.getMail().isEnabled() &&
@@ -80,27 +107,57 @@ public class ResutlsService {
         return future;
     }
 
+    /**
+     * Generate the report and retrieve its contents as soon as it is ready.
+     *
+     * The report status is checked at short intervals first, backing off exponentially (with jitter) up to MAX_SLEEP.
+     * The first interval is based on the size (lines of code) of the scan.
+     */
     private ScanResults getScanResults(Integer scanId, List<Filter> filters) throws MachinaException {
+        /*Results of a finished scan do not change, skip report generation if the report was already downloaded*/
+        ScanResults cached = cxService.getCachedReportContent(scanId, filters);
+        if (cached != null) {
+            return cached;
+        }
         try {
+            long delay = getInitialDelay(cxService.getScanLinesOfCode(scanId));
             Integer reportId = cxService.createScanReport(scanId);
-            Thread.sleep(SLEEP);
-            int timer = 0;
-            while (cxService.getReportStatus(reportId).equals(CxService.REPORT_STATUS_FINISHED)) {
-                Thread.sleep(SLEEP);
-                timer += SLEEP;
-                if (timer >= TIMEOUT) {
+            if (reportId.equals(UNKNOWN_INT)) {
+                throw new MachinaException("Error occurred while creating report for scan Id ".concat(scanId.toString()));
+            }
+            long start = System.currentTimeMillis();
+            Integer status = cxService.getReportStatus(reportId);
+            while (!status.equals(CxService.REPORT_STATUS_CREATED)) {
+                if (status.equals(CxService.REPORT_STATUS_FAILED)) {
+                    log.error("Report generation failed for report Id {}", reportId);
+                    throw new MachinaException("Report generation failed");
+                }
+                if (System.currentTimeMillis() - start >= TIMEOUT) {
                     log.error("Report Generation timeout.  {}", TIMEOUT);
                     throw new MachinaException("Timeout exceeded during report generation");
                 }
+                Thread.sleep(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+                delay = Math.min(delay * 2, MAX_SLEEP);
+                status = cxService.getReportStatus(reportId);
             }
-            Thread.sleep(SLEEP);
-            return cxService.getReportContent(reportId, filters);
+            log.info("Report Id {} ready after {} ms", reportId, System.currentTimeMillis() - start);
+            return cxService.getReportContent(scanId, reportId, filters);
         } catch (InterruptedException e) {
             log.error(ExceptionUtils.getStackTrace(e));
             throw new MachinaException("Interrupted Exception Occurred");
         }
     }
 
+    /**
+     * First polling interval, roughly one second per LOC_PER_SECOND lines of code scanned
+     */
+    private long getInitialDelay(Integer loc) {
+        if (loc == null || loc <= 0) {
+            return MIN_SLEEP;
+        }
+        return Math.max(MIN_SLEEP, Math.min(MAX_SLEEP, loc * 1000L / LOC_PER_SECOND));
+    }
+
     void processResults(ScanRequest request, ScanResults results) throws MachinaException {
         switch (request.getBugTracker().getType()) {
             case JIRA:
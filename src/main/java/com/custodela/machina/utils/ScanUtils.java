@@ -5,12 +5,15 @@ import com.custodela.machina.config.MachinaProperties;
 import com.custodela.machina.dto.*;
 import com.custodela.machina.exception.MachinaRuntimeException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.slf4j.Logger;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.client.HttpClientErrorException;
 
 import javax.validation.constraints.NotNull;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -56,6 +59,21 @@ public class ScanUtils {
      * @return
      */
     public static List<Filter> getFilters(List<String> severity, List<String> cwe, List<String> category, List<String> status) {
+        return getFilters(severity, cwe, category, status, null, null);
+    }
+
+    /**
+     * Create List of filters based on String lists of severity, cwe, category, status, file path (ant style glob) and language
+     * @param severity
+     * @param cwe
+     * @param category
+     * @param status
+     * @param path
+     * @param language
+     * @return
+     */
+    public static List<Filter> getFilters(List<String> severity, List<String> cwe, List<String> category, List<String> status,
+                                          List<String> path, List<String> language) {
         List<Filter> severityList = new ArrayList<>();
         List<Filter> categoryList = new ArrayList<>();
         List<Filter> cweList = new ArrayList<>();
@@ -97,6 +115,22 @@ public class ScanUtils {
         filters.addAll(cweList);
         filters.addAll(categoryList);
         filters.addAll(statusList);
+        if(path != null) {
+            for (String p : path) {
+                filters.add(Filter.builder()
+                        .type(Filter.Type.PATH)
+                        .value(p)
+                        .build());
+            }
+        }
+        if(language != null) {
+            for (String l : language) {
+                filters.add(Filter.builder()
+                        .type(Filter.Type.LANGUAGE)
+                        .value(l)
+                        .build());
+            }
+        }
         return filters;
     }
 
@@ -496,5 +530,55 @@ public class ScanUtils {
         return fields;
     }
 
+    /**
+     * Digest (SHA-256, hex) of an issue: vulnerability, file, severity, cwe, cve and referenced lines/snippets
+     * @param issue
+     * @return
+     */
+    public static String getDigest(ScanResults.XIssue issue) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        putString(hasher, issue.getVulnerability());
+        putString(hasher, issue.getFilename());
+        putString(hasher, issue.getSeverity());
+        putString(hasher, issue.getCwe());
+        putString(hasher, issue.getCve());
+        if(issue.getDetails() != null) {
+            for (Map.Entry<Integer, String> entry : new TreeMap<>(issue.getDetails()).entrySet()) {
+                hasher.putInt(entry.getKey());
+                putString(hasher, entry.getValue());
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Digest (SHA-256, hex) of scan results, independent of the order of the issues
+     * @param results
+     * @return digest, or null if there are no results
+     */
+    public static String getDigest(ScanResults results) {
+        if(results == null || results.getXIssues() == null) {
+            return null;
+        }
+        List<String> digests = new ArrayList<>();
+        for(ScanResults.XIssue issue: results.getXIssues()){
+            digests.add(getDigest(issue));
+        }
+        Collections.sort(digests);
+        Hasher hasher = Hashing.sha256().newHasher();
+        for(String digest: digests){
+            putString(hasher, digest);
+        }
+        return hasher.hash().toString();
+    }
 
+    private static void putString(Hasher hasher, String value) {
+        /*length prefixed, so field boundaries are part of the digest*/
+        if(value == null){
+            hasher.putInt(-1);
+        }
+        else {
+            hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+        }
+    }
 }
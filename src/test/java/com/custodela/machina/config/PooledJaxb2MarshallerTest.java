@@ -0,0 +1,49 @@
+package com.custodela.machina.config;
+
+import checkmarx.wsdl.portal.DeleteProjectResponse;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class PooledJaxb2MarshallerTest {
+
+    private PooledJaxb2Marshaller marshaller;
+
+    @Before
+    public void setUp() throws Exception {
+        marshaller = new PooledJaxb2Marshaller();
+        marshaller.setClassesToBeBound(DeleteProjectResponse.class);
+        marshaller.afterPropertiesSet();
+    }
+
+    @Test
+    public void reusesMarshallersPerThread() throws Exception {
+        Marshaller m = marshaller.createMarshaller();
+        Unmarshaller u = marshaller.createUnmarshaller();
+        assertSame(m, marshaller.createMarshaller());
+        assertSame(u, marshaller.createUnmarshaller());
+
+        /*not shared with other threads*/
+        assertNotSame(m, CompletableFuture.supplyAsync(marshaller::createMarshaller).get());
+        assertNotSame(u, CompletableFuture.supplyAsync(marshaller::createUnmarshaller).get());
+    }
+
+    @Test
+    public void marshalWithReusedMarshallers() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            StringWriter xml = new StringWriter();
+            marshaller.marshal(new DeleteProjectResponse(), new StreamResult(xml));
+            Object response = marshaller.unmarshal(new StreamSource(new StringReader(xml.toString())));
+            assertTrue(response instanceof DeleteProjectResponse);
+        }
+    }
+}
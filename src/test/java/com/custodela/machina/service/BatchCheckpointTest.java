@@ -0,0 +1,43 @@
+package com.custodela.machina.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class BatchCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordAndResume() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("batch.checkpoint");
+        try (BatchCheckpoint checkpoint = new BatchCheckpoint(file, false)) {
+            checkpoint.record(1, 100);
+            checkpoint.record(2, 200);
+        }
+        /*simulate a process killed while writing*/
+        Files.write(file, "3,3".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (BatchCheckpoint checkpoint = new BatchCheckpoint(file, true)) {
+            assertTrue(checkpoint.isCompleted(1, 100));
+            assertFalse(checkpoint.isCompleted(1, 101));
+            assertFalse(checkpoint.isCompleted(3, 3));
+            checkpoint.record(4, 400);
+        }
+        try (BatchCheckpoint checkpoint = new BatchCheckpoint(file, true)) {
+            assertEquals(3, checkpoint.size());
+            assertTrue(checkpoint.isCompleted(4, 400));
+        }
+        try (BatchCheckpoint checkpoint = new BatchCheckpoint(file, false)) {
+            assertEquals(0, checkpoint.size());
+        }
+    }
+}
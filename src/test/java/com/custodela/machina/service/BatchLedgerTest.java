@@ -0,0 +1,66 @@
+package com.custodela.machina.service;
+
+import com.custodela.machina.dto.ScanResults;
+import com.custodela.machina.utils.ScanUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class BatchLedgerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordAndCompact() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("batch.ledger");
+        ScanResults.XIssue high = ScanResults.XIssue.builder().vulnerability("SQL_Injection").file("src/A.java")
+                .severity("High").details(Collections.singletonMap(10, "code")).build();
+        ScanResults.XIssue medium = ScanResults.XIssue.builder().vulnerability("Reflected_XSS").file("src/B.java")
+                .severity("Medium").details(Collections.singletonMap(20, "code")).build();
+        String digest = ScanUtils.getDigest(ScanResults.builder().xIssues(Arrays.asList(high, medium)).build());
+        /*independent of the order of the issues*/
+        assertEquals(digest, ScanUtils.getDigest(ScanResults.builder().xIssues(Arrays.asList(medium, high)).build()));
+        assertNotEquals(digest, ScanUtils.getDigest(ScanResults.builder().xIssues(Collections.singletonList(high)).build()));
+
+        try (BatchLedger ledger = new BatchLedger(file)) {
+            assertEquals(0, ledger.size());
+            ledger.record(1, 100, digest);
+            ledger.record(2, 200, null);
+            ledger.record(1, 101, digest);
+        }
+        assertEquals(3, Files.readAllLines(file).size());
+
+        try (BatchLedger ledger = new BatchLedger(file)) {
+            assertEquals(2, ledger.size());
+            assertTrue(ledger.isUnchanged(1, 101));
+            assertFalse(ledger.isUnchanged(1, 100));
+            assertFalse(ledger.isUnchanged(3, 300));
+            assertEquals(digest, ledger.getDigest(1));
+            assertNull(ledger.getDigest(2));
+        }
+        /*compacted to one line per project*/
+        assertEquals(2, Files.readAllLines(file).size());
+
+        /*ledger of another shard of the team, the latest scan of a project wins*/
+        Path shard = folder.getRoot().toPath().resolve("batch-shard-0-of-2.ledger");
+        try (BatchLedger ledger = new BatchLedger(shard, Collections.singletonList(file))) {
+            assertTrue(ledger.isUnchanged(1, 101));
+            ledger.record(1, 102, null);
+            ledger.record(3, 300, null);
+        }
+        try (BatchLedger ledger = new BatchLedger(file, Collections.singletonList(shard))) {
+            assertEquals(3, ledger.size());
+            assertTrue(ledger.isUnchanged(1, 102));
+            assertTrue(ledger.isUnchanged(2, 200));
+            assertTrue(ledger.isUnchanged(3, 300));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.custodela.machina.service;
+
+import com.custodela.machina.dto.ScanResults;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BatchResultStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void addAndRead() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("batch.jsonl");
+        List<BatchResultStore.Summary> summaries = new ArrayList<>();
+        try (BatchResultStore store = new BatchResultStore(file)) {
+            for (int i = 0; i < 10; i++) {
+                List<ScanResults.XIssue> issues = new ArrayList<>();
+                for (int j = 0; j < i; j++) {
+                    issues.add(ScanResults.XIssue.builder()
+                            .vulnerability("SQL_Injection")
+                            .file("src/File" + j + ".java")
+                            .severity(j % 2 == 0 ? "High" : "Medium")
+                            .details(Collections.singletonMap(j + 1, "code"))
+                            .build());
+                }
+                summaries.add(store.add("project-" + i, ScanResults.builder().xIssues(issues).build()));
+            }
+            store.add("no-scan", null);
+
+            assertEquals(11, store.getSummaries().size());
+            BatchResultStore.Summary summary = summaries.get(5);
+            assertEquals(5, summary.getIssues());
+            assertEquals(Integer.valueOf(3), summary.getSeverities().get("High"));
+            JsonNode record = store.read(summary);
+            assertEquals("project-5", record.get("project").asText());
+            assertEquals(5, record.get("results").get("xissues").size());
+        }
+    }
+
+    @Test
+    public void addSkipsDescriptions() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("batch.jsonl");
+        AtomicInteger resolved = new AtomicInteger();
+        ScanResults.XIssue issue = ScanResults.XIssue.builder()
+                .vulnerability("SQL_Injection")
+                .file("src/File.java")
+                .severity("High")
+                .build();
+        issue.setDescriptionSupplier(() -> {
+            resolved.incrementAndGet();
+            return "description";
+        });
+        try (BatchResultStore store = new BatchResultStore(file)) {
+            JsonNode record = store.read(store.add("project", ScanResults.builder().xIssues(Collections.singletonList(issue)).build()));
+            JsonNode stored = record.get("results").get("xissues").get(0);
+            assertEquals("SQL_Injection", stored.get("vulnerability").asText());
+            assertFalse(stored.has("description"));
+        }
+        assertEquals(0, resolved.get());
+    }
+}
@@ -0,0 +1,61 @@
+package com.custodela.machina.service;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BatchShardTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void assignAndMerge() throws Exception {
+        int count = 4;
+        int[] assigned = new int[count];
+        for (int id = 1; id <= 4000; id++) {
+            int shards = 0;
+            for (int i = 0; i < count; i++) {
+                if (new BatchShard(i, count).contains(id)) {
+                    assigned[i]++;
+                    shards++;
+                }
+            }
+            /*each project is processed by exactly one shard*/
+            assertEquals(1, shards);
+            assertTrue(BatchShard.NONE.contains(id));
+        }
+        for (int i = 0; i < count; i++) {
+            assertTrue(assigned[i] > 800);
+        }
+
+        Path dir = folder.getRoot().toPath();
+        for (int i = 0; i < count; i++) {
+            BatchSummary summary = new BatchSummary("team", new BatchShard(i, count));
+            summary.setProjects(10);
+            summary.setCompleted(8);
+            summary.setSkipped(2);
+            summary.setIssues(i);
+            summary.getSeverities().put("High", i);
+            summary.getResults().add("batch-" + i + ".jsonl");
+            summary.write(dir.resolve("batch-team" + new BatchShard(i, count).getSuffix() + ".summary.json"));
+        }
+        List<BatchSummary> summaries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            summaries.add(BatchSummary.read(dir.resolve("batch-team-shard-" + i + "-of-4.summary.json")));
+        }
+        BatchSummary merged = BatchSummary.merge(summaries);
+        assertEquals(Integer.valueOf(4), merged.getShards());
+        assertEquals(Integer.valueOf(40), merged.getProjects());
+        assertEquals(Integer.valueOf(8), merged.getSkipped());
+        assertEquals(Integer.valueOf(6), merged.getIssues());
+        assertEquals(Integer.valueOf(6), merged.getSeverities().get("High"));
+        assertEquals(4, merged.getResults().size());
+    }
+}
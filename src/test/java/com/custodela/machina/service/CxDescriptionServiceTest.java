@@ -0,0 +1,52 @@
+package com.custodela.machina.service;
+
+import com.custodela.machina.config.CxProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class CxDescriptionServiceTest {
+
+    private SimpleMeterRegistry registry;
+    private CxDescriptionService service;
+
+    @Before
+    public void setUp() throws Exception {
+        CxLegacyService legacyService = mock(CxLegacyService.class);
+        when(legacyService.login(any(), any())).thenReturn("session");
+        when(legacyService.getDescription(eq("session"), anyLong(), anyLong())).thenReturn("description");
+        registry = new SimpleMeterRegistry();
+        service = new CxDescriptionService(new CxProperties(), legacyService, new SyncTaskExecutor(), registry);
+    }
+
+    @Test
+    public void getDescription() throws Exception {
+        assertEquals("description", service.getDescription(1L, 1L, "100", "Java").get());
+        assertEquals("description", service.getDescription(1L, 2L, "100", "Java").get());
+        assertEquals(1, service.getStats(1L).getMisses());
+        assertEquals(1, service.getStats(1L).getHits());
+        assertEquals(1.0, registry.get("machina.cx.description.requests").tag("result", "hit").counter().count(), 0);
+        assertEquals(1.0, registry.get("machina.cx.description.requests").tag("result", "miss").counter().count(), 0);
+    }
+
+    @Test
+    public void publishesScanSummaries() throws Exception {
+        /*the stats of the oldest scans are summarised as more recent scans are looked up*/
+        for (long scanId = 1; scanId <= 200; scanId++) {
+            service.getDescription(scanId, 1L, "100", "Java").get();
+        }
+        DistributionSummary misses = registry.get("machina.cx.description.scan.requests").tag("result", "miss").summary();
+        DistributionSummary hits = registry.get("machina.cx.description.scan.requests").tag("result", "hit").summary();
+        assertTrue(misses.count() > 0);
+        assertEquals(misses.count(), hits.count());
+        /*one lookup per scan, only the first is a miss*/
+        assertTrue(hits.totalAmount() >= hits.count() - 1);
+        assertEquals(hits.count(), registry.get("machina.cx.description.scan.hit.ratio").summary().count());
+    }
+}
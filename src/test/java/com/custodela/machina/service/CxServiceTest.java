@@ -1,16 +1,63 @@
 package com.custodela.machina.service;
 
+import com.custodela.machina.config.CxProperties;
+import com.custodela.machina.dto.Filter;
+import com.custodela.machina.dto.LineDetails;
+import com.custodela.machina.dto.ScanResults;
+import com.custodela.machina.dto.cx.CxTeam;
+import com.custodela.machina.utils.ScanUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(SpringRunner.class)
 public class CxServiceTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private CxService cxService;
+
     @Before
     public void setUp() throws Exception {
+        CxProperties properties = new CxProperties();
+        properties.setOffline(true);
+        cxService = new CxService(properties, null, null, null, new CxReportCache(properties),
+                new RestTemplate(), ForkJoinPool.commonPool(), new SyncTaskExecutor(), new SimpleMeterRegistry());
     }
 
     @Test
@@ -38,7 +85,153 @@ public class CxServiceTest {
     }
 
     @Test
-    public void checkForDuplicateIssue() {
+    public void getTeamIdRemembersUnknownTeams() throws Exception {
+        CxProperties properties = new CxProperties();
+        properties.setUrl("https://cx.local/cxrestapi");
+        CxTokenService tokenService = mock(CxTokenService.class);
+        when(tokenService.createAuthHeaders()).thenReturn(new HttpHeaders());
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        CxTeam team = new CxTeam();
+        team.setId("1");
+        team.setFullName("\\CxServer\\SP\\Company");
+        when(restTemplate.exchange(endsWith("/auth/teams"), eq(HttpMethod.GET), any(HttpEntity.class), eq(CxTeam[].class)))
+                .thenReturn(new ResponseEntity<>(new CxTeam[]{team}, HttpStatus.OK));
+        CxService service = new CxService(properties, null, null, tokenService, new CxReportCache(properties),
+                restTemplate, ForkJoinPool.commonPool(), new SyncTaskExecutor(), new SimpleMeterRegistry());
+
+        assertEquals("1", service.getTeamId("\\CxServer\\SP\\Company"));
+        /*an unknown team reloads the teams once, the miss is remembered*/
+        for (int i = 0; i < 3; i++) {
+            assertEquals(CxService.UNKNOWN, service.getTeamId("\\CxServer\\SP\\Missing"));
+        }
+        assertEquals("1", service.getTeamId("\\CxServer\\SP\\Company"));
+        verify(restTemplate, times(2)).exchange(endsWith("/auth/teams"), eq(HttpMethod.GET), any(HttpEntity.class), eq(CxTeam[].class));
+    }
+
+    @Test
+    public void checkForDuplicateIssue() throws Exception {
+        /*every 4 results share the same vuln+filename*/
+        ScanResults results = cxService.getReportContent(writeReport(100, 4), Collections.emptyList());
+        assertEquals(25, results.getXIssues().size());
+        ScanResults.XIssue issue = results.getXIssues().get(0);
+        assertEquals("src/File0.java", issue.getFilename());
+        assertEquals(4, issue.getDetails().size());
+        assertEquals("code 1", issue.getDetails().get(1));
+        assertEquals(Arrays.asList(1, 2, 3, 4), new ArrayList<>(issue.getDetails().keySet()));
+    }
+
+    @Test
+    public void getReportContentFiltered() throws Exception {
+        File report = writeReport(100, 4);
+        List<Filter> filters = ScanUtils.getFilters(Collections.singletonList("High"), null, null, null,
+                Collections.singletonList("src/File1*.java"), Collections.singletonList("java"));
+        assertEquals(11, cxService.getReportContent(report, filters).getXIssues().size());
+
+        filters = ScanUtils.getFilters(null, null, null, null, null, Collections.singletonList("JavaScript"));
+        assertTrue(cxService.getReportContent(report, filters).getXIssues().isEmpty());
+
+        filters = ScanUtils.getFilters(null, null, null, Collections.singletonList("Urgent"));
+        assertTrue(cxService.getReportContent(report, filters).getXIssues().isEmpty());
+    }
+
+    @Test
+    public void getReportContentParallel() throws Exception {
+        CxProperties properties = new CxProperties();
+        properties.setOffline(true);
+        properties.setReportParallelism(4);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            CxService parallelService = new CxService(properties, null, null, null, new CxReportCache(properties),
+                    new RestTemplate(), pool, new SyncTaskExecutor(), new SimpleMeterRegistry());
+            File report = writeReport(30000, 3, 50);
+            List<ScanResults.XIssue> expected = cxService.getReportContent(report, Collections.emptyList()).getXIssues();
+            List<ScanResults.XIssue> actual = parallelService.getReportContent(report, Collections.emptyList()).getXIssues();
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i), actual.get(i));
+                assertEquals(expected.get(i).getDetails(), actual.get(i).getDetails());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void checkForDuplicateIssueIndex() {
+        Map<ScanResults.XIssue, ScanResults.XIssue> issueIndex = new LinkedHashMap<>();
+        ScanResults.XIssue first = issue("SQL_Injection", "src/A.java", 10);
+        assertTrue(cxService.checkForDuplicateIssue(issueIndex, first.getDetails(), first));
+        /*same vuln+filename, merged into the first issue*/
+        ScanResults.XIssue duplicate = issue("SQL_Injection", "src/A.java", 20);
+        assertFalse(cxService.checkForDuplicateIssue(issueIndex, duplicate.getDetails(), duplicate));
+        /*a line already referenced is not replaced*/
+        ScanResults.XIssue sameLine = issue("SQL_Injection", "src/A.java", 10);
+        sameLine.getDetails().put(10, "other");
+        assertFalse(cxService.checkForDuplicateIssue(issueIndex, sameLine.getDetails(), sameLine));
+        /*other vuln or other file are new issues*/
+        ScanResults.XIssue otherVuln = issue("XSS", "src/A.java", 10);
+        assertTrue(cxService.checkForDuplicateIssue(issueIndex, otherVuln.getDetails(), otherVuln));
+        ScanResults.XIssue otherFile = issue("SQL_Injection", "src/B.java", 10);
+        assertTrue(cxService.checkForDuplicateIssue(issueIndex, otherFile.getDetails(), otherFile));
+
+        assertEquals(3, issueIndex.size());
+        assertSame(first, issueIndex.get(issue("SQL_Injection", "src/A.java", 30)));
+        assertEquals(Arrays.asList(10, 20), new ArrayList<>(first.getDetails().keySet()));
+        assertEquals("code 10", first.getDetails().get(10));
+    }
+
+    private static ScanResults.XIssue issue(String vulnerability, String filename, int line) {
+        Map<Integer, String> details = new LineDetails();
+        details.put(line, "code " + line);
+        return ScanResults.XIssue.builder()
+                .vulnerability(vulnerability)
+                .file(filename)
+                .severity("High")
+                .details(details)
+                .build();
+    }
+
+    /**
+     * Write a Cx XML report with the given number of results, spread over files in groups of resultsPerFile
+     */
+    private File writeReport(int resultCount, int resultsPerFile) throws IOException {
+        return writeReport(resultCount, resultsPerFile, 1);
+    }
+
+    /**
+     * Write a Cx XML report with results spread over the given number of queries, files repeat across queries
+     */
+    private File writeReport(int resultCount, int resultsPerFile, int queryCount) throws IOException {
+        File report = folder.newFile();
+        try (PrintWriter out = new PrintWriter(report, "UTF-8")) {
+            out.println("<?xml version=\"1.0\" encoding=\"utf-8\"?>");
+            out.println("<CxXMLResults ScanId=\"1000001\" ProjectId=\"1\" ProjectName=\"test\" DeepLink=\"http://cx/1\" " +
+                    "LinesOfCodeScanned=\"1000\" FilesScanned=\"10\" ScanType=\"Full\">");
+            int queryResults = resultCount / queryCount;
+            for (int i = 0; i < resultCount; i++) {
+                if (i % queryResults == 0) {
+                    if (i > 0) {
+                        out.println("</Query>");
+                    }
+                    /*every other query shares the same name*/
+                    out.println("<Query id=\"" + i + "\" cweId=\"79\" name=\"Reflected_XSS_" + (i / queryResults % 2) + "\" group=\"Java_High_Risk\" " +
+                            "Severity=\"High\" Language=\"Java\">");
+                }
+                int line = i % resultsPerFile + 1;
+                int file = i % queryResults / resultsPerFile;
+                out.println("<Result NodeId=\"" + i + "\" FileName=\"src/File" + file + ".java\" Status=\"New\" " +
+                        "Line=\"" + line + "\" Column=\"1\" FalsePositive=\"False\" Severity=\"High\" state=\"0\" " +
+                        "DeepLink=\"http://cx/1/" + i + "\">");
+                out.println("<Path ResultId=\"1\" PathId=\"" + i + "\" SimilarityId=\"0\"><PathNode><FileName>src/File" +
+                        file + ".java</FileName><Line>" + line + "</Line><Column>1</Column>" +
+                        "<Snippet><Line><Number>" + line + "</Number><Code>code " + line + "</Code></Line></Snippet>" +
+                        "</PathNode></Path>");
+                out.println("</Result>");
+            }
+            out.println("</Query>");
+            out.println("</CxXMLResults>");
+        }
+        return report;
     }
 
     @Test
@@ -118,7 +311,35 @@ public class CxServiceTest {
     }
 
     @Test
-    public void getOsaReportContent() {
+    public void getOsaReportContent() throws Exception {
+        File libs = folder.newFile();
+        File vulns = folder.newFile();
+        try (PrintWriter out = new PrintWriter(libs, "UTF-8")) {
+            out.println("[{\"id\":\"1\",\"name\":\"commons-collections\",\"version\":\"3.2.1\"}," +
+                    "{\"id\":\"2\",\"name\":\"jackson-databind\",\"version\":\"2.9.5\"}]");
+        }
+        try (PrintWriter out = new PrintWriter(vulns, "UTF-8")) {
+            out.println("[" + osaVuln("CVE-1", "Low", "1") + "," + osaVuln("CVE-2", "High", "1") + "," +
+                    osaVuln("CVE-3", "Medium", "1") + "," + osaVuln("CVE-4", "Medium", "2") + "," +
+                    osaVuln("CVE-5", "High", "3") + "]");
+        }
+        ScanResults results = cxService.getOsaReportContent(vulns, libs, Collections.emptyList());
+        assertEquals(2, results.getXIssues().size());
+        ScanResults.XIssue issue = results.getXIssues().get(0);
+        assertEquals("commons-collections", issue.getFilename());
+        assertEquals("High", issue.getSeverity());
+        assertEquals("CVE-1,CVE-2,CVE-3", issue.getCve());
+        assertEquals(3, issue.getOsaDetails().size());
+
+        List<Filter> filters = ScanUtils.getFilters(Collections.singletonList("Medium"), null, null, null);
+        results = cxService.getOsaReportContent(vulns, libs, filters);
+        assertEquals(2, results.getXIssues().size());
+        assertEquals("CVE-3", results.getXIssues().get(0).getCve());
+    }
+
+    private String osaVuln(String cve, String severity, String libraryId) {
+        return "{\"id\":\"" + cve + "\",\"cveName\":\"" + cve + "\",\"severity\":{\"id\":1,\"name\":\"" + severity + "\"}," +
+                "\"description\":\"test\",\"libraryId\":\"" + libraryId + "\"}";
     }
 
     @Test
@@ -0,0 +1,101 @@
+package com.custodela.machina.service;
+
+import com.custodela.machina.config.CxProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.*;
+
+public class CxTokenServiceTest {
+
+    private static final String URL = "https://cx.local/cxrestapi";
+    private static final String LOGIN = URL + "/auth/identity/connect/token";
+    private RestTemplate restTemplate;
+    private MockRestServiceServer server;
+    private CxTokenService tokenService;
+
+    @Before
+    public void setUp() throws Exception {
+        CxProperties properties = new CxProperties();
+        properties.setUrl(URL);
+        restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        tokenService = new CxTokenService(properties, restTemplate, new SimpleMeterRegistry());
+        tokenService.init();
+    }
+
+    @Test
+    public void retriesRejectedToken() throws Exception {
+        expectLogin("first", 3600);
+        server.expect(requestTo(URL + "/projects")).andExpect(header(HttpHeaders.AUTHORIZATION, "Bearer first"))
+                .andExpect(content().string("{\"name\":\"app\"}"))
+                .andRespond(withStatus(HttpStatus.UNAUTHORIZED));
+        expectLogin("second", 3600);
+        server.expect(requestTo(URL + "/projects")).andExpect(header(HttpHeaders.AUTHORIZATION, "Bearer second"))
+                .andExpect(content().string("{\"name\":\"app\"}"))
+                .andRespond(withSuccess("{\"id\":1}", MediaType.APPLICATION_JSON));
+
+        String response = restTemplate.exchange(URL + "/projects", HttpMethod.POST,
+                new HttpEntity<>("{\"name\":\"app\"}", tokenService.createAuthHeaders()), String.class).getBody();
+        assertEquals("{\"id\":1}", response);
+        assertEquals("second", tokenService.getToken());
+        server.verify();
+    }
+
+    @Test
+    public void doesNotRetryUploads() throws Exception {
+        expectLogin("first", 3600);
+        server.expect(requestTo(URL + "/projects/1/sourceCode/attachments"))
+                .andRespond(withStatus(HttpStatus.UNAUTHORIZED));
+
+        HttpHeaders headers = tokenService.createAuthHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        MultiValueMap<String, Object> map = new LinkedMultiValueMap<>();
+        map.add("zippedSource", new ByteArrayResource(new byte[1024]) {
+            @Override
+            public String getFilename() {
+                return "source.zip";
+            }
+        });
+        try {
+            restTemplate.exchange(URL + "/projects/1/sourceCode/attachments", HttpMethod.POST,
+                    new HttpEntity<>(map, headers), String.class);
+            fail("401 expected");
+        } catch (HttpClientErrorException e) {
+            assertEquals(HttpStatus.UNAUTHORIZED, e.getStatusCode());
+        }
+        server.verify();
+    }
+
+    @Test
+    public void refreshesShortLivedTokens() throws Exception {
+        /*expires within the refresh margin, still used until half way*/
+        expectLogin("first", 300);
+        assertEquals("first", tokenService.getToken());
+        assertEquals("first", tokenService.getToken());
+        server.verify();
+
+        assertEquals(150, CxTokenService.getRefreshAfter(300));
+        assertEquals(3100, CxTokenService.getRefreshAfter(3600));
+    }
+
+    private void expectLogin(String token, long expiresIn) {
+        server.expect(requestTo(LOGIN)).andExpect(method(HttpMethod.POST))
+                .andRespond(withSuccess("{\"access_token\":\"" + token + "\",\"expires_in\":" + expiresIn + ",\"tokenType\":\"Bearer\"}",
+                        MediaType.APPLICATION_JSON));
+    }
+}
@@ -1,13 +1,76 @@
 package com.custodela.machina.service;
 
+import com.atlassian.jira.rest.client.api.IssueRestClient;
+import com.atlassian.jira.rest.client.api.JiraRestClient;
+import com.atlassian.jira.rest.client.api.OptionalIterable;
+import com.atlassian.jira.rest.client.api.ProjectRestClient;
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.atlassian.jira.rest.client.api.SearchRestClient;
+import com.atlassian.jira.rest.client.api.domain.BasicIssue;
+import com.atlassian.jira.rest.client.api.domain.BasicProject;
+import com.atlassian.jira.rest.client.api.domain.BulkOperationErrorResult;
+import com.atlassian.jira.rest.client.api.domain.BulkOperationResult;
+import com.atlassian.jira.rest.client.api.domain.ErrorCollection;
+import com.atlassian.jira.rest.client.api.domain.Issue;
+import com.atlassian.jira.rest.client.api.domain.IssueType;
+import com.atlassian.jira.rest.client.api.domain.Project;
+import com.atlassian.jira.rest.client.api.domain.SearchResult;
+import com.atlassian.jira.rest.client.api.domain.Status;
+import com.atlassian.jira.rest.client.api.domain.Transition;
+import com.atlassian.jira.rest.client.api.domain.input.ComplexIssueInputFieldValue;
+import com.atlassian.jira.rest.client.api.domain.input.IssueInput;
+import com.atlassian.jira.rest.client.api.domain.input.IssueInputBuilder;
+import com.atlassian.jira.rest.client.api.domain.input.TransitionInput;
+import com.atlassian.util.concurrent.Promise;
+import com.atlassian.util.concurrent.Promises;
+import com.custodela.machina.config.JiraProperties;
+import com.custodela.machina.config.MachinaProperties;
+import com.custodela.machina.dto.BugTracker;
+import com.custodela.machina.dto.ScanRequest;
+import com.custodela.machina.dto.ScanResults;
+import com.google.common.util.concurrent.SettableFuture;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
 
 public class JiraServiceTest {
 
+    private static final String LINK = "https://cx.local/CxWebClient/ViewerMain.aspx?scanid=%d&projectid=5&pathid=%d";
+    private ThreadPoolTaskScheduler scheduler;
+    private JiraProperties properties;
+    private IssueRestClient issueClient;
+    private SearchRestClient searchClient;
+    private ProjectRestClient projectClient;
+
     @Before
     public void setUp() throws Exception {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.initialize();
+        properties = new JiraProperties();
+        properties.setSkipUnchanged(true);
+        properties.setRetryBackoff(1L);
+        issueClient = mock(IssueRestClient.class);
+        searchClient = mock(SearchRestClient.class);
+        projectClient = mock(ProjectRestClient.class);
+        IssueType bug = mock(IssueType.class);
+        when(bug.getName()).thenReturn("Bug");
+        when(bug.getId()).thenReturn(1L);
+        Project project = mock(Project.class);
+        when(project.getIssueTypes()).thenReturn(new OptionalIterable<>(Collections.singletonList(bug)));
+        when(projectClient.getProject("APPSEC")).thenReturn(Promises.promise(project));
     }
 
     @Test
@@ -24,6 +87,7 @@ public class JiraServiceTest {
 
     @After
     public void tearDown() throws Exception {
+        scheduler.shutdown();
     }
 
     @Test
@@ -37,4 +101,289 @@ public class JiraServiceTest {
     @Test
     public void process() {
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getDigest() {
+        IssueInputBuilder first = new IssueInputBuilder();
+        first.setDescription("SQL_Injection @ src/A.java");
+        first.setFieldValue("priority", ComplexIssueInputFieldValue.with("name", "High"));
+        first.setFieldValue("customfield_10100", "master");
+        IssueInputBuilder second = new IssueInputBuilder();
+        second.setFieldValue("customfield_10100", "master");
+        second.setFieldValue("priority", ComplexIssueInputFieldValue.with("name", "High"));
+        second.setDescription("SQL_Injection @ src/A.java");
+        /*independent of the order fields are set in*/
+        assertEquals(JiraService.getDigest(first.build()), JiraService.getDigest(second.build()));
+
+        second.setFieldValue("priority", ComplexIssueInputFieldValue.with("name", "Medium"));
+        assertNotEquals(JiraService.getDigest(first.build()), JiraService.getDigest(second.build()));
+
+        /*independent of the scan the deep link of the result points to*/
+        IssueInputBuilder scan1 = new IssueInputBuilder();
+        scan1.setDescription("[Link|" + String.format(LINK, 1000, 50) + "]");
+        IssueInputBuilder scan2 = new IssueInputBuilder();
+        scan2.setDescription("[Link|" + String.format(LINK, 1001, 61) + "]");
+        assertEquals(JiraService.getDigest(scan1.build()), JiraService.getDigest(scan2.build()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void processSkipsUnchangedIssues() throws Exception {
+        JiraService service = getService();
+        when(searchClient.searchJql(anyString(), anyInt(), anyInt(), anySet()))
+                .thenReturn(Promises.promise(new SearchResult(0, 100, 0, Collections.emptyList())));
+        ArgumentCaptor<IssueInput> created = ArgumentCaptor.forClass(IssueInput.class);
+        when(issueClient.createIssue(created.capture())).thenReturn(Promises.promise(new BasicIssue(null, "APPSEC-1", 1L)));
+
+        /*first scan creates the issue*/
+        Map<String, List<String>> result = service.process(getResults(1000, 50), getRequest());
+        assertEquals(Collections.singletonList("APPSEC-1"), result.get("new"));
+
+        /*second scan of the same finding, only the deep link (scan id, path id) differs*/
+        IssueInput input = created.getValue();
+        Issue tracked = getTrackedIssue("APPSEC-1", input.getField("summary").getValue().toString(),
+                new HashSet<>((Collection<String>) input.getField("labels").getValue()), "Open");
+        when(searchClient.searchJql(anyString(), anyInt(), anyInt(), anySet()))
+                .thenReturn(Promises.promise(new SearchResult(0, 100, 1, Collections.singletonList(tracked))));
+        result = service.process(getResults(1001, 61), getRequest());
+        assertTrue(result.get("new").isEmpty());
+        assertTrue(result.get("updated").isEmpty());
+        verify(issueClient, never()).updateIssue(anyString(), any(IssueInput.class));
+        verify(issueClient, never()).addComment(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void processCreatesIssuesInBulk() throws Exception {
+        JiraService service = getService();
+        when(searchClient.searchJql(anyString(), anyInt(), anyInt(), anySet()))
+                .thenReturn(Promises.promise(new SearchResult(0, 100, 0, Collections.emptyList())));
+        ArgumentCaptor<Collection<IssueInput>> bulk = ArgumentCaptor.forClass(Collection.class);
+        /*the second element fails, the issues created are returned in the order of the other elements*/
+        BulkOperationErrorResult error = new BulkOperationErrorResult(
+                new ErrorCollection(400, Collections.emptyList(), Collections.singletonMap("summary", "invalid")), 1);
+        when(issueClient.createIssues(bulk.capture())).thenReturn(Promises.promise(new BulkOperationResult<>(
+                Arrays.asList(new BasicIssue(null, "APPSEC-1", 1L), new BasicIssue(null, "APPSEC-3", 3L)),
+                Collections.singletonList(error))));
+        ArgumentCaptor<IssueInput> created = ArgumentCaptor.forClass(IssueInput.class);
+        when(issueClient.createIssue(created.capture())).thenReturn(Promises.promise(new BasicIssue(null, "APPSEC-2", 2L)));
+
+        Map<String, List<String>> result = service.process(getResults(1000, 50, 51, 52), getRequest());
+        assertEquals(new HashSet<>(Arrays.asList("APPSEC-1", "APPSEC-2", "APPSEC-3")), new HashSet<>(result.get("new")));
+        verify(issueClient, times(1)).createIssues(anyCollection());
+        /*only the failed element is created again, from the input of its own issue*/
+        verify(issueClient, times(1)).createIssue(any(IssueInput.class));
+        assertEquals(getSummary(new ArrayList<>(bulk.getValue()).get(1)), getSummary(created.getValue()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void processRetriesRejectedBulkCreate() throws Exception {
+        JiraService service = getService();
+        when(searchClient.searchJql(anyString(), anyInt(), anyInt(), anySet()))
+                .thenReturn(Promises.promise(new SearchResult(0, 100, 0, Collections.emptyList())));
+        when(issueClient.createIssues(anyCollection())).thenReturn(failed(new RestClientException(Collections.emptyList(), 400)));
+        when(issueClient.createIssue(any(IssueInput.class)))
+                .thenReturn(Promises.promise(new BasicIssue(null, "APPSEC-1", 1L)))
+                .thenReturn(Promises.promise(new BasicIssue(null, "APPSEC-2", 2L)));
+
+        Map<String, List<String>> result = service.process(getResults(1000, 50, 51), getRequest());
+        assertEquals(2, result.get("new").size());
+        verify(issueClient, times(2)).createIssue(any(IssueInput.class));
+        verify(searchClient, never()).searchJql(contains("summary ~"), anyInt(), anyInt(), anySet());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void processLooksUpIssuesOfFailedBulkCreate() throws Exception {
+        JiraService service = getService();
+        when(searchClient.searchJql(anyString(), anyInt(), anyInt(), anySet()))
+                .thenReturn(Promises.promise(new SearchResult(0, 100, 0, Collections.emptyList())));
+        ArgumentCaptor<Collection<IssueInput>> bulk = ArgumentCaptor.forClass(Collection.class);
+        /*timed out, the first issue was created nonetheless*/
+        when(issueClient.createIssues(bulk.capture())).thenReturn(failed(new RestClientException(new TimeoutException())));
+        when(searchClient.searchJql(contains("summary ~"), anyInt(), anyInt(), anySet())).thenAnswer(invocation -> {
+            Issue existing = getTrackedIssue("APPSEC-1", getSummary(bulk.getValue().iterator().next()), Collections.emptySet(), "Open");
+            return Promises.promise(new SearchResult(0, 100, 1, Collections.singletonList(existing)));
+        });
+        ArgumentCaptor<IssueInput> created = ArgumentCaptor.forClass(IssueInput.class);
+        when(issueClient.createIssue(created.capture())).thenReturn(Promises.promise(new BasicIssue(null, "APPSEC-2", 2L)));
+
+        Map<String, List<String>> result = service.process(getResults(1000, 50, 51), getRequest());
+        assertEquals(new HashSet<>(Arrays.asList("APPSEC-1", "APPSEC-2")), new HashSet<>(result.get("new")));
+        verify(issueClient, times(1)).createIssue(any(IssueInput.class));
+        assertEquals(getSummary(new ArrayList<>(bulk.getValue()).get(1)), getSummary(created.getValue()));
+    }
+
+    @Test
+    public void processSharesTransitions() throws Exception {
+        JiraService service = getService();
+        List<Issue> tracked = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            tracked.add(getTrackedIssue("APPSEC-" + i, "Resolved finding " + i, Collections.emptySet(), "Open"));
+        }
+        when(searchClient.searchJql(anyString(), anyInt(), anyInt(), anySet()))
+                .thenReturn(Promises.promise(new SearchResult(0, 100, tracked.size(), tracked)));
+        when(issueClient.getTransitions(any(URI.class))).thenReturn(Promises.promise(getTransitions("Close Issue")));
+        when(issueClient.transition(any(URI.class), any(TransitionInput.class))).thenReturn(Promises.promise(null));
+
+        /*the transitions are retrieved once for the issues in the same status*/
+        Map<String, List<String>> result = service.process(getResults(1000), getRequest());
+        assertEquals(3, result.get("closed").size());
+        service.process(getResults(1001), getRequest());
+        verify(issueClient, times(1)).getTransitions(any(URI.class));
+        verify(issueClient, times(6)).transition(any(URI.class), any(TransitionInput.class));
+
+        service.invalidateMetadata();
+        service.process(getResults(1002), getRequest());
+        verify(issueClient, times(2)).getTransitions(any(URI.class));
+    }
+
+    @Test
+    public void processTransitionsIssueWithOwnTransitions() throws Exception {
+        JiraService service = getService();
+        Issue first = getTrackedIssue("APPSEC-1", "Resolved finding 1", Collections.emptySet(), "Open");
+        Issue second = getTrackedIssue("APPSEC-2", "Resolved finding 2", Collections.emptySet(), "Open");
+        /*a workflow condition hides the close transition of the first issue*/
+        when(issueClient.getTransitions(getTransitionsUri("APPSEC-1"))).thenReturn(Promises.promise(getTransitions("Start Progress")));
+        when(issueClient.getTransitions(getTransitionsUri("APPSEC-2"))).thenReturn(Promises.promise(getTransitions("Start Progress", "Close Issue")));
+        when(issueClient.transition(any(URI.class), any(TransitionInput.class))).thenReturn(Promises.promise(null));
+
+        when(searchClient.searchJql(anyString(), anyInt(), anyInt(), anySet()))
+                .thenReturn(Promises.promise(new SearchResult(0, 100, 1, Collections.singletonList(first))));
+        assertTrue(service.process(getResults(1000), getRequest()).get("closed").isEmpty());
+
+        /*the shared transitions are those of the first issue, the second issue's own are used*/
+        when(searchClient.searchJql(anyString(), anyInt(), anyInt(), anySet()))
+                .thenReturn(Promises.promise(new SearchResult(0, 100, 1, Collections.singletonList(second))));
+        assertEquals(Collections.singletonList("APPSEC-2"), service.process(getResults(1001), getRequest()).get("closed"));
+        verify(issueClient, times(1)).getTransitions(getTransitionsUri("APPSEC-2"));
+        verify(issueClient, times(1)).transition(eq(getTransitionsUri("APPSEC-2")), any(TransitionInput.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void processPagesTrackedIssues() throws Exception {
+        properties.setSearchPageSize(2);
+        JiraService service = getService();
+        List<Issue> tracked = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            tracked.add(getTrackedIssue("APPSEC-" + i, "Fixed finding " + i, Collections.emptySet(), "Closed"));
+        }
+        ArgumentCaptor<Set<String>> fields = ArgumentCaptor.forClass(Set.class);
+        when(searchClient.searchJql(anyString(), eq(2), anyInt(), fields.capture())).thenAnswer(invocation -> {
+            int startAt = invocation.getArgument(2);
+            return Promises.promise(new SearchResult(startAt, 2, 5, tracked.subList(startAt, Math.min(5, startAt + 2))));
+        });
+
+        service.process(getResults(1000), getRequest());
+        /*stops after the short last page*/
+        verify(searchClient).searchJql(anyString(), eq(2), eq(0), anySet());
+        verify(searchClient).searchJql(anyString(), eq(2), eq(2), anySet());
+        verify(searchClient).searchJql(anyString(), eq(2), eq(4), anySet());
+        verify(searchClient, times(3)).searchJql(anyString(), anyInt(), anyInt(), anySet());
+        /*only the fields used to match and update the tracked issues are requested*/
+        for (Set<String> requested : fields.getAllValues()) {
+            assertEquals(new HashSet<>(Arrays.asList("summary", "issuetype", "created", "updated", "project", "status", "labels")), requested);
+        }
+    }
+
+    @Test
+    public void processStopsPagingOnEmptyPage() throws Exception {
+        properties.setSearchPageSize(2);
+        JiraService service = getService();
+        List<Issue> tracked = Arrays.asList(
+                getTrackedIssue("APPSEC-1", "Fixed finding 1", Collections.emptySet(), "Closed"),
+                getTrackedIssue("APPSEC-2", "Fixed finding 2", Collections.emptySet(), "Closed"));
+        /*the total is an estimate, issues may be deleted while paging*/
+        when(searchClient.searchJql(anyString(), anyInt(), eq(0), anySet()))
+                .thenReturn(Promises.promise(new SearchResult(0, 2, 10, tracked)));
+        when(searchClient.searchJql(anyString(), anyInt(), eq(2), anySet()))
+                .thenReturn(Promises.promise(new SearchResult(2, 2, 10, Collections.emptyList())));
+
+        service.process(getResults(1000), getRequest());
+        verify(searchClient, times(2)).searchJql(anyString(), anyInt(), anyInt(), anySet());
+    }
+
+    private JiraService getService() {
+        JiraService service = new JiraService(properties, new MachinaProperties(),
+                new JiraSyncExecutor(properties, scheduler), new SimpleMeterRegistry());
+        JiraRestClient client = mock(JiraRestClient.class);
+        when(client.getSearchClient()).thenReturn(searchClient);
+        ReflectionTestUtils.setField(service, "client", client);
+        ReflectionTestUtils.setField(service, "issueClient", issueClient);
+        ReflectionTestUtils.setField(service, "projectClient", projectClient);
+        return service;
+    }
+
+    private static ScanRequest getRequest() {
+        BugTracker bugTracker = BugTracker.builder()
+                .type(BugTracker.Type.JIRA)
+                .projectKey("APPSEC")
+                .issueType("Bug")
+                .priorities(Collections.singletonMap("High", "High"))
+                .openStatus(Collections.singletonList("Open"))
+                .closedStatus(Collections.singletonList("Closed"))
+                .closeTransition("Close Issue")
+                .build();
+        return ScanRequest.builder()
+                .application("app")
+                .product(ScanRequest.Product.CX)
+                .bugTracker(bugTracker)
+                .build();
+    }
+
+    private static ScanResults getResults(int scanId, int... pathIds) {
+        List<ScanResults.XIssue> issues = new ArrayList<>();
+        for (int i = 0; i < pathIds.length; i++) {
+            issues.add(ScanResults.XIssue.builder()
+                    .vulnerability("SQL_Injection")
+                    .file("src/File" + i + ".java")
+                    .severity("High")
+                    .link(String.format(LINK, scanId, pathIds[i]))
+                    .details(Collections.singletonMap(10, "code"))
+                    .build());
+        }
+        return ScanResults.builder().xIssues(issues).build();
+    }
+
+    private static Issue getTrackedIssue(String key, String summary, Set<String> labels, String statusName) {
+        Issue issue = mock(Issue.class);
+        Status status = mock(Status.class);
+        when(status.getName()).thenReturn(statusName);
+        BasicProject project = mock(BasicProject.class);
+        when(project.getKey()).thenReturn("APPSEC");
+        IssueType issueType = mock(IssueType.class);
+        when(issueType.getName()).thenReturn("Bug");
+        when(issue.getProject()).thenReturn(project);
+        when(issue.getIssueType()).thenReturn(issueType);
+        when(issue.getTransitionsUri()).thenReturn(getTransitionsUri(key));
+        when(issue.getKey()).thenReturn(key);
+        when(issue.getSummary()).thenReturn(summary);
+        when(issue.getLabels()).thenReturn(labels);
+        when(issue.getStatus()).thenReturn(status);
+        return issue;
+    }
+
+    private static String getSummary(IssueInput input) {
+        return input.getField("summary").getValue().toString();
+    }
+
+    private static <T> Promise<T> failed(RestClientException e) {
+        SettableFuture<T> future = SettableFuture.create();
+        future.setException(e);
+        return Promises.forListenableFuture(future);
+    }
+
+    private static URI getTransitionsUri(String key) {
+        return URI.create("https://jira.local/rest/api/2/issue/" + key + "/transitions");
+    }
+
+    private static Iterable<Transition> getTransitions(String... names) {
+        List<Transition> transitions = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            transitions.add(new Transition(names[i], i + 1, Collections.emptyList()));
+        }
+        return transitions;
+    }
+}
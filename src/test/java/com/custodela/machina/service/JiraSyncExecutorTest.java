@@ -0,0 +1,95 @@
+package com.custodela.machina.service;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.atlassian.util.concurrent.Promise;
+import com.atlassian.util.concurrent.Promises;
+import com.custodela.machina.config.JiraProperties;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.Collections;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class JiraSyncExecutorTest {
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.initialize();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void retriesThrottledCalls() {
+        JiraProperties properties = new JiraProperties();
+        properties.setRetryBackoff(1L);
+        JiraSyncExecutor executor = new JiraSyncExecutor(properties, scheduler);
+        AtomicInteger calls = new AtomicInteger();
+        /*throttled twice, then succeeds*/
+        String result = executor.call(() -> calls.incrementAndGet() <= 2 ? JiraSyncExecutorTest.<String>failed(429) : Promises.promise("ABC-1")).join();
+        assertEquals("ABC-1", result);
+        assertEquals(3, calls.get());
+
+        /*other failures are not retried*/
+        AtomicInteger notFound = new AtomicInteger();
+        try {
+            executor.call(() -> {
+                notFound.incrementAndGet();
+                return JiraSyncExecutorTest.<String>failed(404);
+            }).join();
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof RestClientException);
+        }
+        assertEquals(1, notFound.get());
+    }
+
+    @Test
+    public void delaysRetriesByRetryAfter() {
+        JiraProperties properties = new JiraProperties();
+        properties.setRetryBackoff(1L);
+        JiraSyncExecutor executor = new JiraSyncExecutor(properties, scheduler);
+        /*exponential backoff when Jira did not ask for a delay*/
+        assertTrue(executor.getDelay(0) <= 2);
+        executor.throttled(null);
+        assertTrue(executor.getDelay(0) <= 2);
+
+        executor.throttled(30000L);
+        long delay = executor.getDelay(0);
+        assertTrue(delay > 29000 && delay <= 30001);
+        /*a shorter Retry-After does not shorten the current one*/
+        executor.throttled(10L);
+        assertTrue(executor.getDelay(0) > 29000);
+    }
+
+    @Test
+    public void parseRetryAfter() {
+        assertEquals(Long.valueOf(120000), JiraSyncExecutor.parseRetryAfter("120", 0));
+        assertEquals(Long.valueOf(30000), JiraSyncExecutor.parseRetryAfter("Wed, 21 Oct 2015 07:28:30 GMT",
+                1445412480000L));
+        /*dates in the past do not delay*/
+        assertEquals(Long.valueOf(0), JiraSyncExecutor.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT",
+                1445412500000L));
+        assertNull(JiraSyncExecutor.parseRetryAfter(null, 0));
+        assertNull(JiraSyncExecutor.parseRetryAfter("soon", 0));
+    }
+
+    private static <T> Promise<T> failed(int status) {
+        SettableFuture<T> future = SettableFuture.create();
+        future.setException(new RestClientException(Collections.emptyList(), status));
+        return Promises.forListenableFuture(future);
+    }
+}